@@ -1,8 +1,15 @@
-const { Pool } = require("pg");
+const { Pool, types } = require("pg");
 require("dotenv").config();
 
+// TIMESTAMP columns hold UTC (see the session time zone below); read them as UTC
+// rather than in the server's local zone so the ISO strings clients get are exact
+types.setTypeParser(types.builtins.TIMESTAMP, (value) =>
+  new Date(value.replace(" ", "T") + "Z")
+);
+
 const connectionConfig = {
   connectionString: process.env.DATABASE_URL,
+  options: "-c timezone=UTC",
   ssl: {
     rejectUnauthorized: false,
   }
@@ -62,11 +69,26 @@ const initializeDatabase = async () => {
         lat FLOAT,
         lng FLOAT,
         geom GEOMETRY(Point, 4326),
+        rowVersion INT NOT NULL DEFAULT 1,
+        idempotencyKey VARCHAR(255),
         createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
         updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
       );
     `);
 
+    // Bumped on every update; PATCH requests can require the version they were based on
+    await pool.query(`
+      ALTER TABLE hikes ADD COLUMN IF NOT EXISTS rowVersion INT NOT NULL DEFAULT 1;
+    `);
+
+    // Client-generated key of the create request; a retried create returns the first row
+    await pool.query(`
+      ALTER TABLE hikes ADD COLUMN IF NOT EXISTS idempotencyKey VARCHAR(255);
+    `);
+    await pool.query(`
+      CREATE UNIQUE INDEX IF NOT EXISTS idx_hikes_idempotency_key ON hikes (userId, idempotencyKey);
+    `);
+
     // Create index on geom for PostGIS queries
     await pool.query(`
       CREATE INDEX IF NOT EXISTS idx_hikes_geom ON hikes USING GIST(geom);
@@ -86,11 +108,24 @@ const initializeDatabase = async () => {
         status VARCHAR(50) DEFAULT 'Open',
         confirmations INT DEFAULT 0,
         disputes INT DEFAULT 0,
+        rowVersion INT NOT NULL DEFAULT 1,
+        idempotencyKey VARCHAR(255),
         createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
         updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
       );
     `);
 
+    await pool.query(`
+      ALTER TABLE observations ADD COLUMN IF NOT EXISTS rowVersion INT NOT NULL DEFAULT 1;
+    `);
+
+    await pool.query(`
+      ALTER TABLE observations ADD COLUMN IF NOT EXISTS idempotencyKey VARCHAR(255);
+    `);
+    await pool.query(`
+      CREATE UNIQUE INDEX IF NOT EXISTS idx_observations_idempotency_key ON observations (userId, idempotencyKey);
+    `);
+
     // Create index on geom for PostGIS queries
     await pool.query(`
       CREATE INDEX IF NOT EXISTS idx_observations_geom ON observations USING GIST(geom);
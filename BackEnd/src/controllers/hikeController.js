@@ -1,6 +1,7 @@
 const Hike = require("../models/Hike");
 
 // Create hike
+// Sync clients send an Idempotency-Key header so a retried create returns the same hike
 exports.createHike = async (req, res, next) => {
   try {
     const {
@@ -29,6 +30,7 @@ exports.createHike = async (req, res, next) => {
       privacy: privacy || "private",
       lat,
       lng,
+      idempotencyKey: req.get("Idempotency-Key") || req.body.idempotencyKey,
     });
 
     res.status(201).json(hike);
@@ -41,7 +43,19 @@ exports.createHike = async (req, res, next) => {
 exports.getMyHikes = async (req, res, next) => {
   try {
     const userId = req.userId; // From verifyToken middleware
-    const { limit = 50, offset = 0 } = req.query;
+    const { limit = 50, offset = 0, updatedSince, afterId = 0 } = req.query;
+
+    // Sync clients page through changed hikes by (updatedAt, id) instead of offset
+    if (updatedSince !== undefined) {
+      const hikes = await Hike.findChangedByUserId(
+        userId,
+        Number(updatedSince),
+        parseInt(afterId),
+        parseInt(limit)
+      );
+      return res.json(hikes);
+    }
+
     const hikes = await Hike.findByUserId(
       userId,
       parseInt(limit),
@@ -93,14 +107,52 @@ exports.getFollowingFeed = async (req, res, next) => {
   }
 };
 
+// Update some fields of a hike (sync PATCH)
+// baseVersion, when given, is the rowVersion the edit was made against; a hike
+// changed since then answers 409 with its current state instead of being overwritten
+exports.patchHike = async (req, res, next) => {
+  try {
+    const { id } = req.params;
+    const { baseVersion, ...fields } = req.body;
+    const hike = await Hike.patch(id, req.userId, fields, baseVersion);
+
+    if (!hike) {
+      const existing = await Hike.findById(id);
+      if (!existing) {
+        return res.status(404).json({ error: "Hike not found" });
+      }
+      if (Number(existing.userid) !== Number(req.userId)) {
+        return res
+          .status(403)
+          .json({ error: "Unauthorized: You can only modify your own hikes" });
+      }
+      return res
+        .status(409)
+        .json({ error: "Hike was changed by another update", hike: existing });
+    }
+
+    res.json(hike);
+  } catch (err) {
+    next(err);
+  }
+};
+
 // Delete hike
+// Idempotent for the owner: a hike that is already gone answers 200 so a retried
+// sync can confirm the delete; only a hike owned by someone else is refused
 exports.deleteHike = async (req, res, next) => {
   try {
     const { id } = req.params;
-    const hike = await Hike.delete(id);
+    const hike = await Hike.deleteForUser(id, req.userId);
 
     if (!hike) {
-      return res.status(404).json({ error: "Hike not found" });
+      const existing = await Hike.findById(id);
+      if (existing) {
+        return res
+          .status(403)
+          .json({ error: "Unauthorized: You can only delete your own hikes" });
+      }
+      return res.json({ message: "Hike already deleted", alreadyDeleted: true });
     }
 
     res.json({ message: "Hike deleted successfully", hike });
@@ -1,6 +1,6 @@
 const Observation = require("../models/Observation");
 
-// Create observation
+// Create observation (Idempotency-Key header as in createHike)
 exports.createObservation = async (req, res, next) => {
   try {
     const { hikeId, userId, title, imageUrl, lat, lng, status } = req.body;
@@ -19,6 +19,7 @@ exports.createObservation = async (req, res, next) => {
       lat,
       lng,
       status: status || "Open",
+      idempotencyKey: req.get("Idempotency-Key") || req.body.idempotencyKey,
     });
 
     res.status(201).json(observation);
@@ -27,11 +28,83 @@ exports.createObservation = async (req, res, next) => {
   }
 };
 
+// Update some fields of an observation (sync PATCH, see patchHike)
+exports.patchObservation = async (req, res, next) => {
+  try {
+    const { id } = req.params;
+    const { baseVersion, ...fields } = req.body;
+    const observation = await Observation.patch(
+      id,
+      req.userId,
+      fields,
+      baseVersion
+    );
+
+    if (!observation) {
+      const existing = await Observation.findById(id);
+      if (!existing) {
+        return res.status(404).json({ error: "Observation not found" });
+      }
+      if (Number(existing.userid) !== Number(req.userId)) {
+        return res.status(403).json({
+          error: "Unauthorized: You can only modify your own observations",
+        });
+      }
+      return res.status(409).json({
+        error: "Observation was changed by another update",
+        observation: existing,
+      });
+    }
+
+    res.json(observation);
+  } catch (err) {
+    next(err);
+  }
+};
+
+// Delete observation
+// Idempotent for the owner, like deleteHike: an observation that is already gone
+// (e.g. removed with its hike) answers 200
+exports.deleteObservation = async (req, res, next) => {
+  try {
+    const { id } = req.params;
+    const observation = await Observation.deleteForUser(id, req.userId);
+
+    if (!observation) {
+      const existing = await Observation.findById(id);
+      if (existing) {
+        return res.status(403).json({
+          error: "Unauthorized: You can only delete your own observations",
+        });
+      }
+      return res.json({
+        message: "Observation already deleted",
+        alreadyDeleted: true,
+      });
+    }
+
+    res.json({ message: "Observation deleted successfully", observation });
+  } catch (err) {
+    next(err);
+  }
+};
+
 // Get observations by hike
 exports.getObservationsByHike = async (req, res, next) => {
   try {
     const { hikeId } = req.params;
-    const { limit = 50, offset = 0 } = req.query;
+    const { limit = 50, offset = 0, afterId } = req.query;
+
+    // Sync clients page through a hike's observations by id instead of offset
+    if (afterId !== undefined) {
+      const observations = await Observation.findByHikeIdAfter(
+        hikeId,
+        parseInt(afterId),
+        parseInt(limit)
+      );
+      return res.json(observations);
+    }
+
     const observations = await Observation.findByHikeId(
       hikeId,
       parseInt(limit),
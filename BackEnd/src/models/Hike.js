@@ -1,7 +1,21 @@
 const db = require("../configs/db");
 
+// Request fields a PATCH may change, by column
+const PATCHABLE_FIELDS = [
+  "name",
+  "location",
+  "length",
+  "difficulty",
+  "description",
+  "privacy",
+  "lat",
+  "lng",
+];
+
 class Hike {
   // Create a new hike
+  // A create repeated with the same idempotencyKey returns the hike the first one
+  // made instead of inserting another (the key is unique per user; NULL never conflicts)
   static async create(hikeData) {
     const {
       userId,
@@ -13,10 +27,11 @@ class Hike {
       privacy,
       lat,
       lng,
+      idempotencyKey = null,
     } = hikeData;
 
     let query = `
-      INSERT INTO hikes (userId, name, location, length, difficulty, description, privacy, lat, lng`;
+      INSERT INTO hikes (userId, name, location, length, difficulty, description, privacy, lat, lng, idempotencyKey`;
     let values = [
       userId,
       name,
@@ -27,8 +42,9 @@ class Hike {
       privacy,
       lat,
       lng,
+      idempotencyKey,
     ];
-    let paramCount = 9;
+    let paramCount = 10;
 
     // Add geom if coordinates are provided
     if (lat && lng) {
@@ -36,11 +52,13 @@ class Hike {
       values.push(`POINT(${lng} ${lat})`);
     }
 
-    query += `) VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9`;
+    query += `) VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10`;
     if (lat && lng) {
       query += `, ST_GeomFromText($${paramCount + 1}, 4326)`;
     }
-    query += `) RETURNING *`;
+    query += `) ON CONFLICT (userId, idempotencyKey)
+      DO UPDATE SET idempotencyKey = EXCLUDED.idempotencyKey
+      RETURNING *`;
 
     const result = await db.query(query, values);
     return result.rows[0];
@@ -72,6 +90,24 @@ class Hike {
     return result.rows;
   }
 
+  // Get a user's hikes changed after a sync cursor, oldest change first
+  // The cursor is the (updatedAt in ms, id) of the last row of the previous page;
+  // updatedAt is compared at millisecond precision, as clients see it in JSON
+  static async findChangedByUserId(userId, updatedSince, afterId = 0, limit = 50) {
+    const result = await db.query(
+      `SELECT h.*, u.username, u.avatarUrl
+       FROM hikes h
+       LEFT JOIN users u ON h.userId = u.id
+       WHERE h.userId = $1
+         AND (date_trunc('milliseconds', h.updatedAt), h.id) >
+             (to_timestamp($2 / 1000.0) AT TIME ZONE 'UTC', $3)
+       ORDER BY date_trunc('milliseconds', h.updatedAt), h.id
+       LIMIT $4`,
+      [userId, updatedSince, afterId, limit]
+    );
+    return result.rows;
+  }
+
   // Get public hikes
   static async findPublic(limit = 50, offset = 0) {
     const result = await db.query(
@@ -212,7 +248,9 @@ class Hike {
           description = COALESCE($5, description),
           privacy = COALESCE($6, privacy),
           lat = COALESCE($7, lat),
-          lng = COALESCE($8, lng)
+          lng = COALESCE($8, lng),
+          rowVersion = rowVersion + 1,
+          updatedAt = CURRENT_TIMESTAMP
     `;
     const params = [
       name,
@@ -237,6 +275,45 @@ class Hike {
     return result.rows[0];
   }
 
+  // Apply a partial update from a sync client
+  // Only the fields present change (null clears one). With a baseVersion the update
+  // only applies while the row is still at that version. Returns undefined otherwise.
+  static async patch(id, userId, fields, baseVersion) {
+    const sets = [];
+    const params = [];
+    const valueOf = {};
+    for (const field of PATCHABLE_FIELDS) {
+      if (fields[field] !== undefined) {
+        params.push(fields[field]);
+        valueOf[field] = `$${params.length}`;
+        sets.push(`${field} = ${valueOf[field]}`);
+      }
+    }
+
+    // Keep the point in step with the coordinates (SET expressions see the old row)
+    if (valueOf.lat || valueOf.lng) {
+      const lat = valueOf.lat ? `${valueOf.lat}::float` : "lat";
+      const lng = valueOf.lng ? `${valueOf.lng}::float` : "lng";
+      sets.push(
+        `geom = CASE WHEN ${lat} IS NULL OR ${lng} IS NULL THEN NULL ` +
+          `ELSE ST_SetSRID(ST_MakePoint(${lng}, ${lat}), 4326) END`
+      );
+    }
+    sets.push("rowVersion = rowVersion + 1", "updatedAt = CURRENT_TIMESTAMP");
+
+    params.push(id, userId);
+    let query = `UPDATE hikes SET ${sets.join(", ")}
+      WHERE id = $${params.length - 1} AND userId = $${params.length}`;
+    if (baseVersion !== undefined && baseVersion !== null) {
+      params.push(baseVersion);
+      query += ` AND rowVersion = $${params.length}`;
+    }
+    query += ` RETURNING *`;
+
+    const result = await db.query(query, params);
+    return result.rows[0];
+  }
+
   // Delete hike
   static async delete(id) {
     const result = await db.query(
@@ -246,6 +323,15 @@ class Hike {
     return result.rows[0];
   }
 
+  // Delete a hike only if it belongs to the user
+  static async deleteForUser(id, userId) {
+    const result = await db.query(
+      "DELETE FROM hikes WHERE id = $1 AND userId = $2 RETURNING *",
+      [id, userId]
+    );
+    return result.rows[0];
+  }
+
   // Get hikes from followed users (for feed)
   static async getFollowingFeed(userId, limit = 50, offset = 0) {
     const result = await db.query(
@@ -1,7 +1,10 @@
 const db = require("../configs/db");
 
+// Request fields a PATCH may change, by column
+const PATCHABLE_FIELDS = ["title", "imageUrl", "lat", "lng", "status"];
+
 class Observation {
-  // Create a new observation
+  // Create a new observation (idempotent per idempotencyKey, see Hike.create)
   static async create(observationData) {
     const {
       hikeId,
@@ -11,12 +14,13 @@ class Observation {
       lat,
       lng,
       status = "Open",
+      idempotencyKey = null,
     } = observationData;
 
     let query = `
-      INSERT INTO observations (hikeId, userId, title, imageUrl, lat, lng, status`;
-    let values = [hikeId, userId, title, imageUrl, lat, lng, status];
-    let paramCount = 7;
+      INSERT INTO observations (hikeId, userId, title, imageUrl, lat, lng, status, idempotencyKey`;
+    let values = [hikeId, userId, title, imageUrl, lat, lng, status, idempotencyKey];
+    let paramCount = 8;
 
     // Add geom if coordinates are provided
     if (lat && lng) {
@@ -24,11 +28,13 @@ class Observation {
       values.push(`POINT(${lng} ${lat})`);
     }
 
-    query += `) VALUES ($1, $2, $3, $4, $5, $6, $7`;
+    query += `) VALUES ($1, $2, $3, $4, $5, $6, $7, $8`;
     if (lat && lng) {
       query += `, ST_GeomFromText($${paramCount + 1}, 4326)`;
     }
-    query += `) RETURNING *`;
+    query += `) ON CONFLICT (userId, idempotencyKey)
+      DO UPDATE SET idempotencyKey = EXCLUDED.idempotencyKey
+      RETURNING *`;
 
     const result = await db.query(query, values);
     return result.rows[0];
@@ -61,6 +67,20 @@ class Observation {
     return result.rows;
   }
 
+  // Get the observations of a hike after the given id, in id order (sync paging)
+  static async findByHikeIdAfter(hikeId, afterId = 0, limit = 50) {
+    const result = await db.query(
+      `SELECT o.*, u.username, u.avatarUrl
+       FROM observations o
+       LEFT JOIN users u ON o.userId = u.id
+       WHERE o.hikeId = $1 AND o.id > $2
+       ORDER BY o.id
+       LIMIT $3`,
+      [hikeId, afterId, limit]
+    );
+    return result.rows;
+  }
+
   // Get observations by user
   static async findByUserId(userId, limit = 50, offset = 0) {
     const result = await db.query(
@@ -136,7 +156,9 @@ class Observation {
           lng = COALESCE($4, lng),
           status = COALESCE($5, status),
           confirmations = COALESCE($6, confirmations),
-          disputes = COALESCE($7, disputes)
+          disputes = COALESCE($7, disputes),
+          rowVersion = rowVersion + 1,
+          updatedAt = CURRENT_TIMESTAMP
     `;
     const params = [title, imageUrl, lat, lng, status, confirmations, disputes];
 
@@ -152,6 +174,43 @@ class Observation {
     return result.rows[0];
   }
 
+  // Apply a partial update from a sync client (see Hike.patch)
+  static async patch(id, userId, fields, baseVersion) {
+    const sets = [];
+    const params = [];
+    const valueOf = {};
+    for (const field of PATCHABLE_FIELDS) {
+      if (fields[field] !== undefined) {
+        params.push(fields[field]);
+        valueOf[field] = `$${params.length}`;
+        sets.push(`${field} = ${valueOf[field]}`);
+      }
+    }
+
+    // Keep the point in step with the coordinates (SET expressions see the old row)
+    if (valueOf.lat || valueOf.lng) {
+      const lat = valueOf.lat ? `${valueOf.lat}::float` : "lat";
+      const lng = valueOf.lng ? `${valueOf.lng}::float` : "lng";
+      sets.push(
+        `geom = CASE WHEN ${lat} IS NULL OR ${lng} IS NULL THEN NULL ` +
+          `ELSE ST_SetSRID(ST_MakePoint(${lng}, ${lat}), 4326) END`
+      );
+    }
+    sets.push("rowVersion = rowVersion + 1", "updatedAt = CURRENT_TIMESTAMP");
+
+    params.push(id, userId);
+    let query = `UPDATE observations SET ${sets.join(", ")}
+      WHERE id = $${params.length - 1} AND userId = $${params.length}`;
+    if (baseVersion !== undefined && baseVersion !== null) {
+      params.push(baseVersion);
+      query += ` AND rowVersion = $${params.length}`;
+    }
+    query += ` RETURNING *`;
+
+    const result = await db.query(query, params);
+    return result.rows[0];
+  }
+
   // Delete observation
   static async delete(id) {
     const result = await db.query(
@@ -161,6 +220,15 @@ class Observation {
     return result.rows[0];
   }
 
+  // Delete an observation only if it belongs to the user
+  static async deleteForUser(id, userId) {
+    const result = await db.query(
+      "DELETE FROM observations WHERE id = $1 AND userId = $2 RETURNING *",
+      [id, userId]
+    );
+    return result.rows[0];
+  }
+
   // Increment confirmations
   static async incrementConfirmations(id) {
     const result = await db.query(
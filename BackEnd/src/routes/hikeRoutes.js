@@ -8,6 +8,7 @@ router.post("/", hikeController.createHike); // Create/sync hike
 router.get("/my", verifyToken, hikeController.getMyHikes); // Get authenticated user's hikes
 router.get("/nearby", hikeController.getNearbyHikes); // Get nearby hikes
 router.get("/user/:userId/following", hikeController.getFollowingFeed); // Feed from followed users
-router.delete("/:id", hikeController.deleteHike); // Delete hike
+router.patch("/:id", verifyToken, hikeController.patchHike); // Update edited fields
+router.delete("/:id", verifyToken, hikeController.deleteHike); // Delete hike (idempotent)
 
 module.exports = router;
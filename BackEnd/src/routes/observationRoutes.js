@@ -1,9 +1,12 @@
 const express = require("express");
 const router = express.Router();
 const observationController = require("../controllers/observationController");
+const { verifyToken } = require("../middlewares/authMiddleware");
 
 // Observation CRUD - Keep only essential endpoints
 router.post("/", observationController.createObservation); // Create observation
 router.get("/hike/:hikeId", observationController.getObservationsByHike); // Get observations for a hike
+router.patch("/:id", verifyToken, observationController.patchObservation); // Update edited fields
+router.delete("/:id", verifyToken, observationController.deleteObservation); // Delete observation (idempotent)
 
 module.exports = router;
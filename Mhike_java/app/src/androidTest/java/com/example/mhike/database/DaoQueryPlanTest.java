@@ -0,0 +1,237 @@
+package com.example.mhike.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteProgram;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mhike.database.entities.HikeSummary;
+import com.example.mhike.database.entities.ObservationSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Query plan regression tests for HikeDao and ObservationDao.
+ * Runs EXPLAIN QUERY PLAN on the SQL of every DAO query against the real schema
+ * and fails when a query falls back to a full table scan (or, for list queries,
+ * to sorting the result instead of reading it in index order).
+ * Keep the SQL here in step with the @Query strings when a DAO query is added or changed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DaoQueryPlanTest {
+    
+    // "SCAN hikes" (SQLite 3.36+) or "SCAN TABLE hikes"; FTS lookups show up as "SCAN hikes_fts VIRTUAL TABLE"
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?(hikes|observations)\\b");
+    private static final Pattern TEMP_SORT = Pattern.compile("USE TEMP B-TREE FOR (RIGHT PART OF )?ORDER BY");
+    
+    private AppDatabase database;
+    private SupportSQLiteDatabase db;
+    
+    @Before
+    public void openDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        db = database.getOpenHelper().getWritableDatabase();
+    }
+    
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+    
+    @Test
+    public void hikeListQueriesReadInIndexOrder() {
+        assertOrderedSearch("SELECT * FROM hikes WHERE isDeleted = 0 ORDER BY date DESC, time DESC");
+        assertOrderedSearch("SELECT " + HikeSummary.COLUMNS + " FROM hikes WHERE isDeleted = 0 " +
+                            "ORDER BY date DESC, time DESC, id DESC LIMIT ?", 30);
+        assertOrderedSearch("SELECT " + HikeSummary.COLUMNS + " FROM hikes WHERE isDeleted = 0 " +
+                            "AND (date < ? OR (date IS NULL AND ? IS NOT NULL) " +
+                            "OR (date IS ? AND (time < ? OR (time IS NULL AND ? IS NOT NULL) " +
+                            "OR (time IS ? AND id < ?)))) " +
+                            "ORDER BY date DESC, time DESC, id DESC LIMIT ?",
+                            "2024-05-01", "2024-05-01", "2024-05-01", "10:00", "10:00", "10:00", 42L, 30);
+        assertOrderedSearch("SELECT " + HikeSummary.COLUMNS + " FROM hikes WHERE isDeleted = 0 AND date = ? " +
+                            "ORDER BY time DESC", "2024-05-01");
+        assertOrderedSearch("SELECT * FROM hikes WHERE isDeleted = 0 AND date BETWEEN ? AND ? " +
+                            "ORDER BY date DESC, time DESC", "2024-01-01", "2024-12-31");
+        assertOrderedSearch("SELECT * FROM hikes WHERE isDeleted = 0 AND difficulty = ? " +
+                            "ORDER BY date DESC, time DESC", "Hard");
+        assertOrderedSearch("SELECT * FROM hikes WHERE isDeleted = 0 AND privacy = ? " +
+                            "ORDER BY date DESC, time DESC", "Public");
+        assertOrderedSearch("SELECT * FROM hikes WHERE length >= ? ORDER BY length ASC", 5f);
+        assertOrderedSearch("SELECT * FROM hikes WHERE length BETWEEN ? AND ? ORDER BY length ASC", 5f, 10f);
+    }
+    
+    @Test
+    public void hikeSearchQueriesUseFullTextIndex() {
+        // Ranked search sorts its (small) match set by rank, so only the scan is checked
+        assertSearch("SELECT " + HikeSummary.COLUMNS + " FROM hikes JOIN hikes_fts ON hikes.id = hikes_fts.rowid " +
+                     "WHERE hikes_fts MATCH ? AND hikes.isDeleted = 0 " +
+                     "ORDER BY CASE " +
+                     "WHEN hikes.id IN (SELECT rowid FROM hikes_fts WHERE name MATCH ?) THEN 0 " +
+                     "WHEN hikes.id IN (SELECT rowid FROM hikes_fts WHERE location MATCH ?) THEN 1 " +
+                     "ELSE 2 END, hikes.date DESC, hikes.time DESC", "lake*", "lake*", "lake*");
+        assertOrderedSearch("SELECT " + HikeSummary.COLUMNS + " FROM hikes " +
+                            "WHERE id IN (SELECT rowid FROM hikes_fts WHERE location MATCH ?) " +
+                            "AND isDeleted = 0 ORDER BY date DESC, time DESC", "lake*");
+    }
+    
+    @Test
+    public void hikeFilterQueriesAvoidFullScans() {
+        assertSearch(new HikeFilter().toQuery());
+        assertSearch(new HikeFilter().name("lake").location("keswick").toQuery());
+        assertSearch(new HikeFilter().length(5f, 20f).difficulty("Hard").parkingAvailable(true).toQuery());
+        assertSearch(new HikeFilter().dateRange("2024-01-01", "2024-06-30").privacy("Public").toQuery());
+    }
+    
+    @Test
+    public void hikeLookupAndSyncQueriesAvoidFullScans() {
+        assertSearch("SELECT * FROM hikes WHERE id = ?", 1L);
+        assertSearch("SELECT * FROM hikes WHERE id IN (?, ?)", 1L, 2L);
+        assertSearch("SELECT * FROM hikes WHERE cloudId = ?", "abc");
+        assertSearch("SELECT * FROM hikes WHERE cloudId IN (?, ?)", "abc", "def");
+        assertOrderedSearch("SELECT * FROM hikes WHERE syncStatus = ? ORDER BY date DESC, time DESC", 0);
+        assertSearch("SELECT * FROM hikes WHERE isDeleted = 1");
+    }
+    
+    @Test
+    public void hikeWriteQueriesAvoidFullScans() {
+        assertSearch("UPDATE hikes SET cloudId = ?, updatedAt = MAX(updatedAt, ?), " +
+                     "cloudVersion = MAX(cloudVersion, ?), " +
+                     "syncStatus = CASE WHEN version = ? THEN 1 ELSE 0 END, " +
+                     "dirtyFields = CASE WHEN version = ? THEN NULL ELSE dirtyFields END " +
+                     "WHERE id = ?", "abc", 0L, 0L, 1L, 1L, 1L);
+        assertSearch("UPDATE hikes SET isDeleted = 1, updatedAt = ? WHERE id = ?", 0L, 1L);
+        assertSearch("DELETE FROM hikes WHERE id = ?", 1L);
+        assertSearch("DELETE FROM hikes WHERE id IN (?, ?)", 1L, 2L);
+        // Intended: "DELETE FROM hikes" (reset) and the COUNT(*) / SUM(length) totals read every row
+    }
+    
+    @Test
+    public void observationListQueriesReadInIndexOrder() {
+        assertOrderedSearch("SELECT " + ObservationSummary.COLUMNS + " FROM observations " +
+                            "WHERE hikeId = ? AND isDeleted = 0 ORDER BY time DESC", 1L);
+        assertOrderedSearch("SELECT * FROM observations WHERE hikeId = ? AND isDeleted = 0 ORDER BY time DESC", 1L);
+        assertOrderedSearch("SELECT * FROM observations WHERE hikeId = ? AND imageUri IS NOT NULL " +
+                            "AND isDeleted = 0 ORDER BY time DESC", 1L);
+        assertOrderedSearch("SELECT * FROM observations WHERE hikeId = ? AND latitude IS NOT NULL " +
+                            "AND longitude IS NOT NULL AND isDeleted = 0 ORDER BY time DESC", 1L);
+        assertOrderedSearch("SELECT * FROM observations WHERE isDeleted = 0 ORDER BY time DESC");
+        assertOrderedSearch("SELECT * FROM observations WHERE status = ? AND isDeleted = 0 ORDER BY time DESC",
+                            "Open");
+        assertSearch("SELECT COUNT(*) FROM observations WHERE hikeId = ? AND isDeleted = 0", 1L);
+    }
+    
+    @Test
+    public void observationSearchQueriesUseFullTextIndex() {
+        assertSearch("SELECT observations.* FROM observations JOIN observations_fts " +
+                     "ON observations.id = observations_fts.rowid " +
+                     "WHERE observations_fts MATCH ? AND observations.isDeleted = 0 " +
+                     "ORDER BY CASE " +
+                     "WHEN observations.id IN (SELECT rowid FROM observations_fts WHERE title MATCH ?) THEN 0 " +
+                     "ELSE 1 END, observations.time DESC", "deer*", "deer*");
+    }
+    
+    @Test
+    public void observationLookupAndSyncQueriesAvoidFullScans() {
+        assertSearch("SELECT * FROM observations WHERE id = ?", 1L);
+        assertSearch("SELECT * FROM observations WHERE cloudId = ? LIMIT 1", "abc");
+        assertSearch("SELECT * FROM observations WHERE cloudId IN (?, ?)", "abc", "def");
+        assertOrderedSearch("SELECT * FROM observations WHERE syncStatus = ? AND isDeleted = 0 " +
+                            "ORDER BY createdAt DESC", 0);
+        assertSearch("SELECT * FROM observations WHERE syncStatus = ? AND isDeleted = 0 ORDER BY time DESC", 0);
+        assertSearch("SELECT * FROM observations WHERE isDeleted = 1");
+        assertSearch("SELECT COUNT(*) FROM observations WHERE imageUri = ?", "/data/image.jpg");
+        // Intended: getAllObservationsSync reads every live row (sorted by createdAt)
+        assertSearch("SELECT * FROM observations WHERE isDeleted = 0 ORDER BY createdAt DESC");
+    }
+    
+    @Test
+    public void observationWriteQueriesAvoidFullScans() {
+        assertSearch("UPDATE observations SET cloudId = ?, updatedAt = MAX(updatedAt, ?), " +
+                     "cloudVersion = MAX(cloudVersion, ?), " +
+                     "syncStatus = CASE WHEN version = ? THEN 1 ELSE 0 END, " +
+                     "dirtyFields = CASE WHEN version = ? THEN NULL ELSE dirtyFields END " +
+                     "WHERE id = ?", "abc", 0L, 0L, 1L, 1L, 1L);
+        assertSearch("UPDATE observations SET isDeleted = 1, imageUri = NULL, updatedAt = ? WHERE id = ?", 0L, 1L);
+        assertSearch("DELETE FROM observations WHERE id = ?", 1L);
+        assertSearch("DELETE FROM observations WHERE id IN (?, ?)", 1L, 2L);
+        assertSearch("DELETE FROM observations WHERE hikeId = ?", 1L);
+    }
+    
+    /**
+     * Fail if the query scans hikes or observations
+     */
+    private void assertSearch(String sql, Object... args) {
+        assertSearch(new SimpleSQLiteQuery(sql, args));
+    }
+    
+    private void assertSearch(SupportSQLiteQuery query) {
+        List<String> plan = explain(query);
+        for (String step : plan) {
+            if (FULL_SCAN.matcher(step).find()) {
+                fail("Full table scan in " + query.getSql() + "\n" + plan);
+            }
+        }
+    }
+    
+    /**
+     * Fail if the query scans hikes or observations, or sorts instead of reading in index order
+     */
+    private void assertOrderedSearch(String sql, Object... args) {
+        SimpleSQLiteQuery query = new SimpleSQLiteQuery(sql, args);
+        assertSearch(query);
+        List<String> plan = explain(query);
+        for (String step : plan) {
+            if (TEMP_SORT.matcher(step).find()) {
+                fail("Result sorted in a temp B-tree in " + sql + "\n" + plan);
+            }
+        }
+    }
+    
+    /**
+     * Run EXPLAIN QUERY PLAN with the query's own arguments and return the plan steps
+     */
+    private List<String> explain(SupportSQLiteQuery query) {
+        SupportSQLiteQuery explain = new SupportSQLiteQuery() {
+            @Override
+            public String getSql() {
+                return "EXPLAIN QUERY PLAN " + query.getSql();
+            }
+            
+            @Override
+            public void bindTo(SupportSQLiteProgram statement) {
+                query.bindTo(statement);
+            }
+            
+            @Override
+            public int getArgCount() {
+                return query.getArgCount();
+            }
+        };
+        
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = db.query(explain)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        return plan;
+    }
+}
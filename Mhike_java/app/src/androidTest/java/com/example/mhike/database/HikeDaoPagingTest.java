@@ -0,0 +1,94 @@
+package com.example.mhike.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mhike.database.daos.HikeDao;
+import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.HikeSummary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for keyset paging of the hike list.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeDaoPagingTest {
+    
+    private static final int PAGE_SIZE = 3;
+    
+    private AppDatabase database;
+    private HikeDao hikeDao;
+    
+    @Before
+    public void openDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        hikeDao = database.hikeDao();
+    }
+    
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+    
+    @Test
+    public void pagesThroughEveryHikeIncludingUndatedOnes() {
+        insertHike("2024-05-02", "09:00");
+        insertHike("2024-05-02", null);
+        insertHike("2024-05-01", "10:00");
+        insertHike("2024-05-01", "10:00");
+        // Downloaded hikes carry no date or time
+        insertHike(null, null);
+        insertHike(null, null);
+        insertHike(null, "08:00");
+        insertHike(null, null);
+        
+        List<Long> expected = new ArrayList<>();
+        for (HikeSummary hike : hikeDao.getFirstHikePageSync(100)) {
+            expected.add(hike.id);
+        }
+        assertEquals(8, expected.size());
+        
+        assertEquals(expected, pageThroughAll());
+    }
+    
+    @Test
+    public void pagesWhenOnlyUndatedHikesExist() {
+        for (int i = 0; i < 7; i++) {
+            insertHike(null, null);
+        }
+        
+        assertEquals(7, pageThroughAll().size());
+    }
+    
+    private List<Long> pageThroughAll() {
+        List<Long> ids = new ArrayList<>();
+        List<HikeSummary> page = hikeDao.getFirstHikePageSync(PAGE_SIZE);
+        while (true) {
+            for (HikeSummary hike : page) {
+                ids.add(hike.id);
+            }
+            if (page.size() < PAGE_SIZE) {
+                return ids;
+            }
+            HikeSummary last = page.get(page.size() - 1);
+            page = hikeDao.getHikePageAfterSync(last.date, last.time, last.id, PAGE_SIZE);
+        }
+    }
+    
+    private void insertHike(String date, String time) {
+        hikeDao.insert(new Hike("Hike", "Lake District", date, time, 10f, "Medium", true));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mhike.database.AppDatabase;
+import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.Observation;
+import com.example.mhike.services.CloudPageWriter.PendingHike;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for writing downloaded pages in a single transaction.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CloudPageWriterTest {
+    
+    private AppDatabase database;
+    private CloudPageWriter writer;
+    
+    @Before
+    public void openDatabase() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        writer = new CloudPageWriter(database);
+    }
+    
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+    
+    @Test
+    public void writesPageAndLinksObservationsToNewHikes() {
+        PendingHike first = pendingHike("hike-1", "obs-1", "obs-2");
+        PendingHike second = pendingHike("hike-2", "obs-3");
+        
+        CloudPageWriter.PageCounts written = writer.write(Arrays.asList(first, second));
+        
+        assertEquals(2, written.hikesInserted);
+        assertEquals(3, written.observationsInserted);
+        assertEquals(2, database.hikeDao().getAllHikesSync().size());
+        assertNotEquals(0, first.hike.id);
+        List<Observation> observations = database.observationDao().getObservationsForHikeSync(first.hike.id);
+        assertEquals(2, observations.size());
+    }
+    
+    @Test
+    public void failedWriteRollsBackWholePage() {
+        Hike existing = cloudHike("hike-0");
+        existing.name = "Before";
+        existing.id = database.hikeDao().insert(existing);
+        
+        existing.name = "After";
+        PendingHike update = new PendingHike(existing, false);
+        PendingHike insert = pendingHike("hike-1", "obs-1");
+        // Same cloud ID as obs-1: the unique index rejects the second insert
+        PendingHike duplicate = pendingHike("hike-2", "obs-1");
+        
+        try {
+            writer.write(Arrays.asList(update, insert, duplicate));
+            fail("Expected the duplicate observation to fail the page");
+        } catch (RuntimeException expected) {
+            // Rolled back below
+        }
+        
+        List<Hike> hikes = database.hikeDao().getAllHikesSync();
+        assertEquals(1, hikes.size());
+        assertEquals("Before", hikes.get(0).name);
+        assertTrue(database.observationDao().getAllObservationsSync().isEmpty());
+        assertEquals(0, insert.hike.id);
+        assertEquals(0, duplicate.hike.id);
+    }
+    
+    @Test
+    public void rowCountIncludesObservations() {
+        assertEquals(5, CloudPageWriter.rowCount(Arrays.asList(
+            pendingHike("hike-1", "obs-1", "obs-2"), pendingHike("hike-2", "obs-3"))));
+    }
+    
+    private static PendingHike pendingHike(String cloudId, String... observationCloudIds) {
+        PendingHike entry = new PendingHike(cloudHike(cloudId), true);
+        for (String observationCloudId : observationCloudIds) {
+            Observation observation = new Observation(0, "Observation " + observationCloudId, "10:00");
+            observation.cloudId = observationCloudId;
+            observation.syncStatus = 1;
+            entry.observations.add(observation);
+        }
+        return entry;
+    }
+    
+    private static Hike cloudHike(String cloudId) {
+        Hike hike = new Hike("Hike " + cloudId, "Lake District", "2024-05-01", "09:00", 10f, "Medium", true);
+        hike.cloudId = cloudId;
+        hike.syncStatus = 1;
+        return hike;
+    }
+}
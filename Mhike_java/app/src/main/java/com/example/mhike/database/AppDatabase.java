@@ -5,11 +5,19 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.mhike.database.daos.HikeDao;
 import com.example.mhike.database.daos.ObservationDao;
+import com.example.mhike.database.daos.SyncOutboxDao;
+import com.example.mhike.database.daos.UploadLedgerDao;
 import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.HikeFts;
 import com.example.mhike.database.entities.Observation;
+import com.example.mhike.database.entities.ObservationFts;
+import com.example.mhike.database.entities.SyncOutboxEntry;
+import com.example.mhike.database.entities.UploadLedgerEntry;
 
 /**
  * Room Database singleton for M-Hike application.
@@ -19,10 +27,21 @@ import com.example.mhike.database.entities.Observation;
  * - Version 1: Initial schema with Hike and Observation tables
  * - Version 2: Added index on Observation.hikeId foreign key for query performance
  * - Version 3: Added isDeleted flag to Hike table for deletion sync tracking
+ * - Version 4: Added unique indexes on Hike.cloudId and Observation.cloudId for download deduplication
+ * - Version 5: Added upload_ledger table so interrupted uploads resume instead of repeating steps
+ * - Version 6: Added sync_outbox table for per-row retry backoff
+ * - Version 7: Added dirtyFields and version to Hike and Observation for incremental (PATCH) sync
+ * - Version 8: Added isDeleted flag to Observation table for deletion sync tracking
+ * - Version 9: Added hikes_fts and observations_fts full-text indexes for search
+ * - Version 10: Added indexes on Hike (isDeleted, date, time) and length for filtered queries
+ * - Version 11: Added index on Hike (syncStatus, date, time) and Observation (hikeId, isDeleted, time),
+ *   (syncStatus, createdAt), (isDeleted, time) and imageUri; replaces the plain hikeId index
+ * - Version 12: Added cloudVersion to Hike and Observation (server row version PATCHes are based on)
  */
 @Database(
-    entities = {Hike.class, Observation.class},
-    version = 3,
+    entities = {Hike.class, Observation.class, UploadLedgerEntry.class, SyncOutboxEntry.class,
+                HikeFts.class, ObservationFts.class},
+    version = 12,
     exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
@@ -30,11 +49,174 @@ public abstract class AppDatabase extends RoomDatabase {
     private static volatile AppDatabase INSTANCE;
     private static final String DATABASE_NAME = "mhike_database.db";
     
+    /**
+     * Version 3 -> 4: unique cloudId indexes.
+     * Empty cloud IDs become NULL and duplicate cloud rows are collapsed onto the
+     * oldest local copy first, otherwise the unique indexes could not be created.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("UPDATE hikes SET cloudId = NULL WHERE cloudId = ''");
+            db.execSQL("UPDATE observations SET cloudId = NULL WHERE cloudId = ''");
+            
+            // Re-parent observations of duplicate hikes, then drop the duplicates
+            db.execSQL("UPDATE observations SET hikeId = (" +
+                       "SELECT MIN(keep.id) FROM hikes keep JOIN hikes dup ON keep.cloudId = dup.cloudId " +
+                       "WHERE dup.id = observations.hikeId) " +
+                       "WHERE hikeId IN (SELECT id FROM hikes WHERE cloudId IS NOT NULL AND id NOT IN " +
+                       "(SELECT MIN(id) FROM hikes WHERE cloudId IS NOT NULL GROUP BY cloudId))");
+            db.execSQL("DELETE FROM hikes WHERE cloudId IS NOT NULL AND id NOT IN " +
+                       "(SELECT MIN(id) FROM hikes WHERE cloudId IS NOT NULL GROUP BY cloudId)");
+            db.execSQL("DELETE FROM observations WHERE cloudId IS NOT NULL AND id NOT IN " +
+                       "(SELECT MIN(id) FROM observations WHERE cloudId IS NOT NULL GROUP BY cloudId)");
+            
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_hikes_cloudId` ON `hikes` (`cloudId`)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_observations_cloudId` ON `observations` (`cloudId`)");
+        }
+    };
+    
+    /**
+     * Version 4 -> 5: upload ledger table.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `upload_ledger` (" +
+                       "`entityType` TEXT NOT NULL, `localId` INTEGER NOT NULL, `requestKey` TEXT, " +
+                       "`contentHash` TEXT, `imageUrl` TEXT, `cloudId` TEXT, `updatedAt` INTEGER NOT NULL, " +
+                       "PRIMARY KEY(`entityType`, `localId`))");
+        }
+    };
+    
+    /**
+     * Version 5 -> 6: sync outbox table.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_outbox` (" +
+                       "`entityType` TEXT NOT NULL, `localId` INTEGER NOT NULL, `op` TEXT, " +
+                       "`attempts` INTEGER NOT NULL, `nextAttemptAt` INTEGER NOT NULL, " +
+                       "`lastAttemptAt` INTEGER NOT NULL, `createdAt` INTEGER NOT NULL, " +
+                       "PRIMARY KEY(`entityType`, `localId`))");
+        }
+    };
+    
+    /**
+     * Version 6 -> 7: dirty-field tracking columns.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE hikes ADD COLUMN dirtyFields TEXT");
+            db.execSQL("ALTER TABLE hikes ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE observations ADD COLUMN dirtyFields TEXT");
+            db.execSQL("ALTER TABLE observations ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+    
+    /**
+     * Version 7 -> 8: observation tombstones.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE observations ADD COLUMN isDeleted INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+    
+    /**
+     * Version 8 -> 9: full-text indexes.
+     * Same tables and sync triggers Room creates for the FTS entities on a fresh install,
+     * then a rebuild indexes the existing rows.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            createContentFtsTable(db, "hikes_fts", "hikes", "name", "location", "description");
+            createContentFtsTable(db, "observations_fts", "observations", "title", "comments");
+        }
+    };
+    
+    /**
+     * Version 9 -> 10: hike filter indexes.
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_hikes_isDeleted_date_time` ON `hikes` " +
+                       "(`isDeleted`, `date`, `time`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_hikes_length` ON `hikes` (`length`)");
+        }
+    };
+    
+    /**
+     * Version 10 -> 11: composite indexes for the list, sync and image reference queries.
+     * (hikeId, isDeleted, time) also covers the hikeId foreign key, so the old index goes.
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_hikes_syncStatus_date_time` ON `hikes` " +
+                       "(`syncStatus`, `date`, `time`)");
+            db.execSQL("DROP INDEX IF EXISTS `index_observations_hikeId`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_observations_hikeId_isDeleted_time` ON `observations` " +
+                       "(`hikeId`, `isDeleted`, `time`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_observations_syncStatus_createdAt` ON `observations` " +
+                       "(`syncStatus`, `createdAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_observations_isDeleted_time` ON `observations` " +
+                       "(`isDeleted`, `time`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_observations_imageUri` ON `observations` (`imageUri`)");
+        }
+    };
+    
+    /**
+     * Version 11 -> 12: the server row version each synced row was last seen at.
+     */
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE hikes ADD COLUMN cloudVersion INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE observations ADD COLUMN cloudVersion INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+    
+    /**
+     * Create an external-content FTS4 table with Room's content sync triggers and index the existing rows.
+     */
+    private static void createContentFtsTable(SupportSQLiteDatabase db, String ftsTable, String contentTable,
+                                              String... columns) {
+        StringBuilder definitions = new StringBuilder();
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (String column : columns) {
+            definitions.append("`").append(column).append("` TEXT, ");
+            names.append(", `").append(column).append("`");
+            values.append(", NEW.`").append(column).append("`");
+        }
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `" + ftsTable + "` USING FTS4(" + definitions +
+                   "tokenize=unicode61, content=`" + contentTable + "`)");
+        
+        String prefix = "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_" + ftsTable + "_";
+        String delete = " BEGIN DELETE FROM `" + ftsTable + "` WHERE `docid`=OLD.`rowid`; END";
+        String insert = " BEGIN INSERT INTO `" + ftsTable + "`(`docid`" + names + ") VALUES (NEW.`rowid`" +
+                        values + "); END";
+        db.execSQL(prefix + "BEFORE_UPDATE BEFORE UPDATE ON `" + contentTable + "`" + delete);
+        db.execSQL(prefix + "BEFORE_DELETE BEFORE DELETE ON `" + contentTable + "`" + delete);
+        db.execSQL(prefix + "AFTER_UPDATE AFTER UPDATE ON `" + contentTable + "`" + insert);
+        db.execSQL(prefix + "AFTER_INSERT AFTER INSERT ON `" + contentTable + "`" + insert);
+        
+        db.execSQL("INSERT INTO `" + ftsTable + "`(`" + ftsTable + "`) VALUES ('rebuild')");
+    }
+    
     /**
      * Abstract methods to get DAOs.
      */
     public abstract HikeDao hikeDao();
     public abstract ObservationDao observationDao();
+    public abstract UploadLedgerDao uploadLedgerDao();
+    public abstract SyncOutboxDao syncOutboxDao();
     
     /**
      * Get singleton instance of AppDatabase.
@@ -52,6 +234,8 @@ public abstract class AppDatabase extends RoomDatabase {
                             AppDatabase.class,
                             DATABASE_NAME
                         )
+                        .addMigrations(MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8,
+                            MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12)
                         .fallbackToDestructiveMigration()  // For development only
                         .build();
                 }
@@ -0,0 +1,42 @@
+package com.example.mhike.database;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * CloudTimestampAdapter - Reads cloud timestamps into epoch milliseconds
+ * The API serializes TIMESTAMP columns as ISO-8601 UTC strings; plain numbers are
+ * taken as milliseconds already. Missing values read as 0.
+ */
+public class CloudTimestampAdapter extends TypeAdapter<Long> {
+    
+    @Override
+    public void write(JsonWriter out, Long value) throws IOException {
+        out.value(value);
+    }
+    
+    @Override
+    public Long read(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return 0L;
+        }
+        if (token == JsonToken.NUMBER) {
+            return in.nextLong();
+        }
+        String value = in.nextString();
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new JsonSyntaxException("Invalid timestamp " + value + " at " + in.getPreviousPath(), e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.mhike.database;
+
+import java.util.Locale;
+
+/**
+ * FtsQuery - Turns free text typed by the user into an FTS4 MATCH expression
+ * Every word becomes a prefix term (all of them must match), so "lake dis"
+ * finds "Lake District" while the user is still typing. Anything that is not
+ * a letter or digit separates words, which also strips FTS query syntax.
+ */
+public final class FtsQuery {
+    
+    private FtsQuery() {}
+    
+    /**
+     * Build a prefix MATCH expression from user input
+     * @return the expression, or null if the input contains no searchable words
+     */
+    public static String prefixMatch(String input) {
+        if (input == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= input.length(); i++) {
+            char c = i < input.length() ? input.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                // Lower case keeps words such as "or" and "near" from being read as operators
+                match.append(match.length() > 0 ? " " : "")
+                    .append(word.toString().toLowerCase(Locale.ROOT))
+                    .append('*');
+                word.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.mhike.database;
+
+import androidx.sqlite.db.SimpleSQLiteQuery;
+
+import com.example.mhike.database.entities.HikeSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HikeFilter - Multi-criteria hike search compiled into one parameterized query
+ * Criteria left unset are not part of the query. Name and location use the
+ * full-text index (word-prefix matching, see FtsQuery); ranges are inclusive.
+ * Run the result with HikeDao.filterHikes so only matching rows are loaded,
+ * as HikeSummary list rows.
+ */
+public class HikeFilter {
+    
+    private String name;
+    private String location;
+    private Float minLength;
+    private Float maxLength;
+    private String dateFrom;
+    private String dateTo;
+    private String difficulty;
+    private String privacy;
+    private Boolean parkingAvailable;
+    
+    /**
+     * Words the hike name must contain (as word prefixes)
+     */
+    public HikeFilter name(String name) {
+        this.name = FtsQuery.prefixMatch(name);
+        return this;
+    }
+    
+    /**
+     * Words the location must contain (as word prefixes)
+     */
+    public HikeFilter location(String location) {
+        this.location = FtsQuery.prefixMatch(location);
+        return this;
+    }
+    
+    /**
+     * @param minLength shortest length in kilometers, or null for no lower bound
+     * @param maxLength longest length in kilometers, or null for no upper bound
+     */
+    public HikeFilter length(Float minLength, Float maxLength) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        return this;
+    }
+    
+    /**
+     * @param dateFrom first date (YYYY-MM-DD), or null for no lower bound
+     * @param dateTo last date (YYYY-MM-DD), or null for no upper bound
+     */
+    public HikeFilter dateRange(String dateFrom, String dateTo) {
+        this.dateFrom = emptyToNull(dateFrom);
+        this.dateTo = emptyToNull(dateTo);
+        return this;
+    }
+    
+    public HikeFilter difficulty(String difficulty) {
+        this.difficulty = emptyToNull(difficulty);
+        return this;
+    }
+    
+    public HikeFilter privacy(String privacy) {
+        this.privacy = emptyToNull(privacy);
+        return this;
+    }
+    
+    public HikeFilter parkingAvailable(Boolean parkingAvailable) {
+        this.parkingAvailable = parkingAvailable;
+        return this;
+    }
+    
+    /**
+     * Whether no criteria are set (the filter matches every hike)
+     */
+    public boolean isEmpty() {
+        return name == null && location == null && minLength == null && maxLength == null
+            && dateFrom == null && dateTo == null && difficulty == null && privacy == null
+            && parkingAvailable == null;
+    }
+    
+    /**
+     * Compile the criteria into a query for hike list rows, newest first
+     */
+    public SimpleSQLiteQuery toQuery() {
+        StringBuilder sql = new StringBuilder("SELECT " + HikeSummary.COLUMNS + " FROM hikes WHERE isDeleted = 0");
+        List<Object> args = new ArrayList<>();
+        
+        if (name != null) {
+            sql.append(" AND id IN (SELECT rowid FROM hikes_fts WHERE name MATCH ?)");
+            args.add(name);
+        }
+        if (location != null) {
+            sql.append(" AND id IN (SELECT rowid FROM hikes_fts WHERE location MATCH ?)");
+            args.add(location);
+        }
+        if (minLength != null) {
+            sql.append(" AND length >= ?");
+            args.add(minLength);
+        }
+        if (maxLength != null) {
+            sql.append(" AND length <= ?");
+            args.add(maxLength);
+        }
+        if (dateFrom != null) {
+            sql.append(" AND date >= ?");
+            args.add(dateFrom);
+        }
+        if (dateTo != null) {
+            sql.append(" AND date <= ?");
+            args.add(dateTo);
+        }
+        if (difficulty != null) {
+            sql.append(" AND difficulty = ?");
+            args.add(difficulty);
+        }
+        if (privacy != null) {
+            sql.append(" AND privacy = ?");
+            args.add(privacy);
+        }
+        if (parkingAvailable != null) {
+            sql.append(" AND parkingAvailable = ?");
+            args.add(parkingAvailable ? 1 : 0);
+        }
+        
+        sql.append(" ORDER BY date DESC, time DESC");
+        return new SimpleSQLiteQuery(sql.toString(), args.toArray());
+    }
+    
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+}
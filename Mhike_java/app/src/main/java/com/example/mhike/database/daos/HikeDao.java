@@ -5,9 +5,14 @@ import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.HikeFts;
+import com.example.mhike.database.entities.HikeSummary;
+import com.example.mhike.database.entities.Observation;
 
 import java.util.List;
 
@@ -30,12 +35,38 @@ public interface HikeDao {
     @Insert
     long[] insertAll(Hike... hikes);
     
+    /**
+     * Insert a page of hikes in one statement batch (callers wrap it in a transaction).
+     */
+    @Insert
+    long[] insertAll(List<Hike> hikes);
+    
     /**
      * Update an existing hike.
      */
     @Update
     int update(Hike hike);
     
+    /**
+     * Update a page of hikes in one statement batch (callers wrap it in a transaction).
+     */
+    @Update
+    int updateAll(List<Hike> hikes);
+    
+    /**
+     * Mark a hike as synced after an upload, unless it was edited again in the meantime.
+     * A newer edit (different version) keeps the row pending along with its dirty fields.
+     * cloudVersion is the row version the server reported (0 = not reported, keeps the stored one).
+     * @return the number of rows matched (0 if the hike no longer exists)
+     */
+    @Query("UPDATE hikes SET cloudId = :cloudId, updatedAt = MAX(updatedAt, :updatedAt), " +
+           "cloudVersion = MAX(cloudVersion, :cloudVersion), " +
+           "syncStatus = CASE WHEN version = :version THEN 1 ELSE 0 END, " +
+           "dirtyFields = CASE WHEN version = :version THEN NULL ELSE dirtyFields END " +
+           "WHERE id = :hikeId")
+    int markSyncedIfUnchanged(long hikeId, String cloudId, long version, long updatedAt,
+                              long cloudVersion);
+    
     /**
      * Delete a hike from the database.
      */
@@ -54,6 +85,27 @@ public interface HikeDao {
     @Query("SELECT * FROM hikes WHERE isDeleted = 0 ORDER BY date DESC, time DESC")
     List<Hike> getAllHikesSync();
     
+    /**
+     * Get the first page of hike list rows, newest first (blocking call, excluding deleted).
+     * Pages are ordered by (date, time, id) so every hike has a unique position.
+     */
+    @Query("SELECT " + HikeSummary.COLUMNS + " FROM hikes WHERE isDeleted = 0 " +
+           "ORDER BY date DESC, time DESC, id DESC LIMIT :limit")
+    List<HikeSummary> getFirstHikePageSync(int limit);
+    
+    /**
+     * Get the page of hikes that follows the given hike (keyset pagination, blocking call).
+     * Reads the (isDeleted, date, time) index in order instead of skipping an OFFSET.
+     * Downloaded hikes have no date or time; SQLite sorts NULL last in DESC order, so the
+     * comparison treats NULL as below every value and matches it with IS to page through them.
+     */
+    @Query("SELECT " + HikeSummary.COLUMNS + " FROM hikes WHERE isDeleted = 0 " +
+           "AND (date < :date OR (date IS NULL AND :date IS NOT NULL) " +
+           "OR (date IS :date AND (time < :time OR (time IS NULL AND :time IS NOT NULL) " +
+           "OR (time IS :time AND id < :id)))) " +
+           "ORDER BY date DESC, time DESC, id DESC LIMIT :limit")
+    List<HikeSummary> getHikePageAfterSync(String date, String time, long id, int limit);
+    
     /**
      * Get a single hike by ID.
      */
@@ -67,24 +119,31 @@ public interface HikeDao {
     LiveData<Hike> getHikeByIdLive(long hikeId);
     
     /**
-     * Search hikes by name (case-insensitive).
+     * Full-text search over name, location and description (match built by FtsQuery).
+     * Hikes matching on name rank first, then on location, then on description.
      */
-    @Query("SELECT * FROM hikes WHERE LOWER(name) LIKE '%' || LOWER(:query) || '%' " +
-           "ORDER BY date DESC, time DESC")
-    LiveData<List<Hike>> searchHikesByName(String query);
+    @Query("SELECT " + HikeSummary.COLUMNS + " FROM hikes JOIN hikes_fts ON hikes.id = hikes_fts.rowid " +
+           "WHERE hikes_fts MATCH :match AND hikes.isDeleted = 0 " +
+           "ORDER BY CASE " +
+           "WHEN hikes.id IN (SELECT rowid FROM hikes_fts WHERE name MATCH :match) THEN 0 " +
+           "WHEN hikes.id IN (SELECT rowid FROM hikes_fts WHERE location MATCH :match) THEN 1 " +
+           "ELSE 2 END, hikes.date DESC, hikes.time DESC")
+    LiveData<List<HikeSummary>> searchHikes(String match);
     
     /**
-     * Search hikes by location (case-insensitive).
+     * Full-text search over location only (match built by FtsQuery).
      */
-    @Query("SELECT * FROM hikes WHERE LOWER(location) LIKE '%' || LOWER(:location) || '%' " +
-           "ORDER BY date DESC, time DESC")
-    LiveData<List<Hike>> searchHikesByLocation(String location);
+    @Query("SELECT " + HikeSummary.COLUMNS + " FROM hikes " +
+           "WHERE id IN (SELECT rowid FROM hikes_fts WHERE location MATCH :match) " +
+           "AND isDeleted = 0 ORDER BY date DESC, time DESC")
+    LiveData<List<HikeSummary>> searchHikesByLocation(String match);
     
     /**
      * Search hikes by date.
      */
-    @Query("SELECT * FROM hikes WHERE date = :date ORDER BY time DESC")
-    LiveData<List<Hike>> searchHikesByDate(String date);
+    @Query("SELECT " + HikeSummary.COLUMNS + " FROM hikes WHERE isDeleted = 0 AND date = :date " +
+           "ORDER BY time DESC")
+    LiveData<List<HikeSummary>> searchHikesByDate(String date);
     
     /**
      * Filter hikes by minimum length.
@@ -95,13 +154,14 @@ public interface HikeDao {
     /**
      * Filter hikes by difficulty.
      */
-    @Query("SELECT * FROM hikes WHERE difficulty = :difficulty ORDER BY date DESC, time DESC")
+    @Query("SELECT * FROM hikes WHERE isDeleted = 0 AND difficulty = :difficulty " +
+           "ORDER BY date DESC, time DESC")
     LiveData<List<Hike>> filterByDifficulty(String difficulty);
     
     /**
      * Filter hikes by date range.
      */
-    @Query("SELECT * FROM hikes WHERE date BETWEEN :startDate AND :endDate " +
+    @Query("SELECT * FROM hikes WHERE isDeleted = 0 AND date BETWEEN :startDate AND :endDate " +
            "ORDER BY date DESC, time DESC")
     LiveData<List<Hike>> filterByDateRange(String startDate, String endDate);
     
@@ -112,10 +172,17 @@ public interface HikeDao {
            "ORDER BY length ASC")
     LiveData<List<Hike>> filterByLength(float minLength, float maxLength);
     
+    /**
+     * Run a multi-criteria filter compiled by HikeFilter.toQuery().
+     * Re-runs when hikes (or their full-text index) or observations change.
+     */
+    @RawQuery(observedEntities = {Hike.class, HikeFts.class, Observation.class})
+    LiveData<List<HikeSummary>> filterHikes(SupportSQLiteQuery query);
+    
     /**
      * Get hikes by privacy status.
      */
-    @Query("SELECT * FROM hikes WHERE privacy = :privacy ORDER BY date DESC, time DESC")
+    @Query("SELECT * FROM hikes WHERE isDeleted = 0 AND privacy = :privacy ORDER BY date DESC, time DESC")
     LiveData<List<Hike>> getHikesByPrivacy(String privacy);
     
     /**
@@ -154,6 +221,20 @@ public interface HikeDao {
     @Query("SELECT * FROM hikes WHERE cloudId = :cloudId")
     Hike getHikeByCloudIdSync(String cloudId);
     
+    /**
+     * Get all hikes whose cloud ID is in the given set (bulk deduplication during download).
+     * Backed by the unique index on cloudId; callers keep the list under SQLite's variable limit.
+     */
+    @Query("SELECT * FROM hikes WHERE cloudId IN (:cloudIds)")
+    List<Hike> getHikesByCloudIdsSync(List<String> cloudIds);
+    
+    /**
+     * Get all hikes whose local ID is in the given set (resolving parent cloud IDs during upload).
+     * Callers keep the list under SQLite's variable limit.
+     */
+    @Query("SELECT * FROM hikes WHERE id IN (:ids)")
+    List<Hike> getHikesByIdsSync(List<Long> ids);
+    
     /**
      * Get hikes marked as deleted (for syncing deletions to cloud).
      */
@@ -172,6 +253,13 @@ public interface HikeDao {
     @Query("DELETE FROM hikes WHERE id = :hikeId")
     void permanentlyDelete(long hikeId);
     
+    /**
+     * Permanently delete a batch of hikes (purging tombstones the server confirmed).
+     * Callers keep the list under SQLite's variable limit.
+     */
+    @Query("DELETE FROM hikes WHERE id IN (:hikeIds)")
+    void permanentlyDeleteAll(List<Long> hikeIds);
+    
     /**
      * Delete all hikes (for reset functionality).
      */
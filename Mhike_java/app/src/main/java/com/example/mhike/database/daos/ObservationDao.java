@@ -8,6 +8,7 @@ import androidx.room.Query;
 import androidx.room.Update;
 
 import com.example.mhike.database.entities.Observation;
+import com.example.mhike.database.entities.ObservationSummary;
 
 import java.util.List;
 
@@ -30,12 +31,38 @@ public interface ObservationDao {
     @Insert
     long[] insertAll(Observation... observations);
     
+    /**
+     * Insert a page of observations in one statement batch (callers wrap it in a transaction).
+     */
+    @Insert
+    long[] insertAll(List<Observation> observations);
+    
     /**
      * Update an existing observation.
      */
     @Update
     int update(Observation observation);
     
+    /**
+     * Update a page of observations in one statement batch (callers wrap it in a transaction).
+     */
+    @Update
+    int updateAll(List<Observation> observations);
+    
+    /**
+     * Mark an observation as synced after an upload, unless it was edited again in the meantime.
+     * A newer edit (different version) keeps the row pending along with its dirty fields.
+     * cloudVersion is the row version the server reported (0 = not reported, keeps the stored one).
+     * @return the number of rows matched (0 if the observation no longer exists)
+     */
+    @Query("UPDATE observations SET cloudId = :cloudId, updatedAt = MAX(updatedAt, :updatedAt), " +
+           "cloudVersion = MAX(cloudVersion, :cloudVersion), " +
+           "syncStatus = CASE WHEN version = :version THEN 1 ELSE 0 END, " +
+           "dirtyFields = CASE WHEN version = :version THEN NULL ELSE dirtyFields END " +
+           "WHERE id = :observationId")
+    int markSyncedIfUnchanged(long observationId, String cloudId, long version, long updatedAt,
+                              long cloudVersion);
+    
     /**
      * Delete an observation from the database.
      */
@@ -43,15 +70,16 @@ public interface ObservationDao {
     int delete(Observation observation);
     
     /**
-     * Get all observations for a specific hike, ordered by time.
+     * Get the list rows for a specific hike's observations, ordered by time.
      */
-    @Query("SELECT * FROM observations WHERE hikeId = :hikeId ORDER BY time DESC")
-    LiveData<List<Observation>> getObservationsForHike(long hikeId);
+    @Query("SELECT " + ObservationSummary.COLUMNS + " FROM observations " +
+           "WHERE hikeId = :hikeId AND isDeleted = 0 ORDER BY time DESC")
+    LiveData<List<ObservationSummary>> getObservationsForHike(long hikeId);
     
     /**
      * Get all observations for a specific hike (blocking call).
      */
-    @Query("SELECT * FROM observations WHERE hikeId = :hikeId ORDER BY time DESC")
+    @Query("SELECT * FROM observations WHERE hikeId = :hikeId AND isDeleted = 0 ORDER BY time DESC")
     List<Observation> getObservationsForHikeSync(long hikeId);
     
     /**
@@ -69,32 +97,38 @@ public interface ObservationDao {
     /**
      * Get all observations.
      */
-    @Query("SELECT * FROM observations ORDER BY time DESC")
+    @Query("SELECT * FROM observations WHERE isDeleted = 0 ORDER BY time DESC")
     LiveData<List<Observation>> getAllObservations();
     
     /**
-     * Search observations by title.
+     * Full-text search over title and comments (match built by FtsQuery).
+     * Observations matching on title rank first.
      */
-    @Query("SELECT * FROM observations WHERE LOWER(title) LIKE '%' || LOWER(:query) || '%' " +
-           "ORDER BY time DESC")
-    LiveData<List<Observation>> searchObservationsByTitle(String query);
+    @Query("SELECT observations.* FROM observations JOIN observations_fts " +
+           "ON observations.id = observations_fts.rowid " +
+           "WHERE observations_fts MATCH :match AND observations.isDeleted = 0 " +
+           "ORDER BY CASE " +
+           "WHEN observations.id IN (SELECT rowid FROM observations_fts WHERE title MATCH :match) THEN 0 " +
+           "ELSE 1 END, observations.time DESC")
+    LiveData<List<Observation>> searchObservations(String match);
     
     /**
      * Get observations with specific status.
      */
-    @Query("SELECT * FROM observations WHERE status = :status ORDER BY time DESC")
+    @Query("SELECT * FROM observations WHERE status = :status AND isDeleted = 0 ORDER BY time DESC")
     LiveData<List<Observation>> getObservationsByStatus(String status);
     
     /**
      * Get observations by sync status.
      */
-    @Query("SELECT * FROM observations WHERE syncStatus = :syncStatus ORDER BY time DESC")
+    @Query("SELECT * FROM observations WHERE syncStatus = :syncStatus AND isDeleted = 0 " +
+           "ORDER BY time DESC")
     LiveData<List<Observation>> getObservationsBySyncStatus(int syncStatus);
     
     /**
      * Get observations with photos for a hike.
      */
-    @Query("SELECT * FROM observations WHERE hikeId = :hikeId AND imageUri IS NOT NULL " +
+    @Query("SELECT * FROM observations WHERE hikeId = :hikeId AND imageUri IS NOT NULL AND isDeleted = 0 " +
            "ORDER BY time DESC")
     LiveData<List<Observation>> getObservationsWithPhotos(long hikeId);
     
@@ -103,13 +137,13 @@ public interface ObservationDao {
      * Uses simple distance calculation (Haversine would be better in production).
      */
     @Query("SELECT * FROM observations WHERE hikeId = :hikeId AND " +
-           "latitude IS NOT NULL AND longitude IS NOT NULL ORDER BY time DESC")
+           "latitude IS NOT NULL AND longitude IS NOT NULL AND isDeleted = 0 ORDER BY time DESC")
     LiveData<List<Observation>> getObservationsWithLocation(long hikeId);
     
     /**
      * Get observation count for a specific hike.
      */
-    @Query("SELECT COUNT(*) FROM observations WHERE hikeId = :hikeId")
+    @Query("SELECT COUNT(*) FROM observations WHERE hikeId = :hikeId AND isDeleted = 0")
     LiveData<Integer> getObservationCountForHike(long hikeId);
     
     /**
@@ -127,7 +161,8 @@ public interface ObservationDao {
     /**
      * Get observations by sync status (blocking call for background threads).
      */
-    @Query("SELECT * FROM observations WHERE syncStatus = :syncStatus ORDER BY createdAt DESC")
+    @Query("SELECT * FROM observations WHERE syncStatus = :syncStatus AND isDeleted = 0 " +
+           "ORDER BY createdAt DESC")
     List<Observation> getObservationsBySyncStatusSync(int syncStatus);
     
     /**
@@ -136,10 +171,23 @@ public interface ObservationDao {
     @Query("SELECT * FROM observations WHERE cloudId = :cloudId LIMIT 1")
     Observation getObservationByCloudIdSync(String cloudId);
     
+    /**
+     * Get all observations whose cloud ID is in the given set (bulk deduplication during download).
+     * Backed by the unique index on cloudId; callers keep the list under SQLite's variable limit.
+     */
+    @Query("SELECT * FROM observations WHERE cloudId IN (:cloudIds)")
+    List<Observation> getObservationsByCloudIdsSync(List<String> cloudIds);
+    
+    /**
+     * Count observations pointing at a local image file (reference count for ObservationImageStore).
+     */
+    @Query("SELECT COUNT(*) FROM observations WHERE imageUri = :imageUri")
+    int countObservationsWithImageSync(String imageUri);
+    
     /**
      * Get all observations (blocking call for background threads).
      */
-    @Query("SELECT * FROM observations ORDER BY createdAt DESC")
+    @Query("SELECT * FROM observations WHERE isDeleted = 0 ORDER BY createdAt DESC")
     List<Observation> getAllObservationsSync();
     
     /**
@@ -147,4 +195,25 @@ public interface ObservationDao {
      */
     @Query("DELETE FROM observations WHERE id = :observationId")
     void permanentlyDelete(long observationId);
+    
+    /**
+     * Get observations marked as deleted (for syncing deletions to cloud).
+     */
+    @Query("SELECT * FROM observations WHERE isDeleted = 1")
+    List<Observation> getDeletedObservationsSync();
+    
+    /**
+     * Mark an observation as deleted instead of physically deleting it.
+     * The tombstone drops its local image reference so the file can be released right away.
+     */
+    @Query("UPDATE observations SET isDeleted = 1, imageUri = NULL, updatedAt = :timestamp " +
+           "WHERE id = :observationId")
+    void markAsDeleted(long observationId, long timestamp);
+    
+    /**
+     * Permanently delete a batch of observations (purging tombstones the server confirmed).
+     * Callers keep the list under SQLite's variable limit.
+     */
+    @Query("DELETE FROM observations WHERE id IN (:observationIds)")
+    void permanentlyDeleteAll(List<Long> observationIds);
 }
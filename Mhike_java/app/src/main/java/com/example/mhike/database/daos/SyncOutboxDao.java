@@ -0,0 +1,62 @@
+package com.example.mhike.database.daos;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.mhike.database.entities.SyncOutboxEntry;
+
+import java.util.List;
+
+/**
+ * Data Access Object for the sync outbox.
+ * All calls are blocking and meant for sync background threads.
+ */
+@Dao
+public interface SyncOutboxDao {
+    
+    /**
+     * Add entries, keeping the retry state of rows that are already queued.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertIfAbsent(List<SyncOutboxEntry> entries);
+    
+    /**
+     * Get every queued entry.
+     */
+    @Query("SELECT * FROM sync_outbox")
+    List<SyncOutboxEntry> getAllSync();
+    
+    /**
+     * Replace the operation of a queued row; a different operation starts with a clean retry state.
+     */
+    @Query("UPDATE sync_outbox SET op = :op, attempts = 0, nextAttemptAt = 0 " +
+           "WHERE entityType = :entityType AND localId = :localId AND op != :op")
+    void replaceOp(String entityType, long localId, String op);
+    
+    /**
+     * Record a failed attempt and when the next one may happen.
+     */
+    @Query("UPDATE sync_outbox SET attempts = attempts + 1, lastAttemptAt = :now, nextAttemptAt = :nextAttemptAt " +
+           "WHERE entityType = :entityType AND localId = :localId")
+    void recordFailure(String entityType, long localId, long now, long nextAttemptAt);
+    
+    /**
+     * Get the number of failed attempts for a queued row (0 if not queued).
+     */
+    @Query("SELECT COALESCE(MAX(attempts), 0) FROM sync_outbox WHERE entityType = :entityType AND localId = :localId")
+    int getAttemptsSync(String entityType, long localId);
+    
+    /**
+     * Remove a row's entry once its operation succeeded (or the row no longer needs syncing).
+     */
+    @Query("DELETE FROM sync_outbox WHERE entityType = :entityType AND localId = :localId")
+    void delete(String entityType, long localId);
+    
+    /**
+     * Delete all entries (for reset functionality).
+     */
+    @Query("DELETE FROM sync_outbox")
+    void deleteAll();
+}
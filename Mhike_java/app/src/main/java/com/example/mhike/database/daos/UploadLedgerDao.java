@@ -0,0 +1,39 @@
+package com.example.mhike.database.daos;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.mhike.database.entities.UploadLedgerEntry;
+
+/**
+ * Data Access Object for the upload ledger.
+ * All calls are blocking and meant for sync background threads.
+ */
+@Dao
+public interface UploadLedgerDao {
+    
+    /**
+     * Get the ledger entry for a local row, or null if no upload is in progress.
+     */
+    @Query("SELECT * FROM upload_ledger WHERE entityType = :entityType AND localId = :localId")
+    UploadLedgerEntry getEntrySync(String entityType, long localId);
+    
+    /**
+     * Insert or replace a ledger entry.
+     */
+    @Upsert
+    void upsert(UploadLedgerEntry entry);
+    
+    /**
+     * Remove the entry for a row whose upload has completed.
+     */
+    @Query("DELETE FROM upload_ledger WHERE entityType = :entityType AND localId = :localId")
+    void delete(String entityType, long localId);
+    
+    /**
+     * Delete all ledger entries (for reset functionality).
+     */
+    @Query("DELETE FROM upload_ledger")
+    void deleteAll();
+}
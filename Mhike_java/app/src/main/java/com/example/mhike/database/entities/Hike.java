@@ -2,14 +2,25 @@ package com.example.mhike.database.entities;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
+import com.example.mhike.database.CloudTimestampAdapter;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
 /**
  * Hike entity for local SQLite storage.
  * Schema aligns with cloud PostgreSQL Hike table.
  */
-@Entity(tableName = "hikes")
+@Entity(
+    tableName = "hikes",
+    indices = {
+        @Index(value = "cloudId", unique = true),
+        @Index(value = {"isDeleted", "date", "time"}),
+        @Index(value = "length"),
+        @Index(value = {"syncStatus", "date", "time"})
+    }
+)
 public class Hike {
     
     @PrimaryKey(autoGenerate = true)
@@ -34,6 +45,10 @@ public class Hike {
     public String privacy;  // "Public" or "Private"
     public int syncStatus;  // 0 = local only, 1 = synced to cloud
     public boolean isDeleted;  // 0 = active, 1 = deleted (marked for deletion sync)
+    public String dirtyFields;  // Comma-separated payload fields edited since the last upload (null = none)
+    public long version;  // Incremented on every local edit; guards marking a row synced
+    @SerializedName("rowversion")
+    public long cloudVersion;  // Cloud row version last seen (0 = unknown); PATCHes are based on it
     
     // User information (for feed display)
     @Ignore
@@ -44,7 +59,11 @@ public class Hike {
     public String userAvatarUrl;  // Author's avatar URL
     
     // Metadata
+    @SerializedName(value = "createdat", alternate = "createdAt")
+    @JsonAdapter(CloudTimestampAdapter.class)
     public long createdAt;  // Timestamp in milliseconds
+    @SerializedName(value = "updatedat", alternate = "updatedAt")
+    @JsonAdapter(CloudTimestampAdapter.class)
     public long updatedAt;  // Timestamp in milliseconds
     public float latitude;  // Optional geo-tagging
     public float longitude;  // Optional geo-tagging
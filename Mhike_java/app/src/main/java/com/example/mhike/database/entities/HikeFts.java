@@ -0,0 +1,22 @@
+package com.example.mhike.database.entities;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * HikeFts - Full-text index over the searchable text of hikes
+ * An external-content FTS4 table: it stores only the index, reads the text from
+ * the hikes table, and Room keeps it in sync with triggers on hikes.
+ * Its rowid is the hike's local ID.
+ */
+@Fts4(contentEntity = Hike.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "hikes_fts")
+public class HikeFts {
+    
+    public String name;
+    public String location;
+    public String description;
+    
+    public HikeFts() {}
+}
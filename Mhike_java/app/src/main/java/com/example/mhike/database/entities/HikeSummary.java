@@ -0,0 +1,37 @@
+package com.example.mhike.database.entities;
+
+/**
+ * HikeSummary - The columns a hike list row shows, read instead of the full Hike
+ * Leaves out the description, sync bookkeeping and coordinates, and adds the
+ * observation count and a cover photo so list rows need no extra queries.
+ * Queries select COLUMNS from hikes; open the full Hike by id when a row is picked.
+ */
+public class HikeSummary {
+    
+    /**
+     * Select list for "SELECT " + COLUMNS + " FROM hikes ..."
+     * Count and cover are per-row lookups on the observations (hikeId, isDeleted, time) index.
+     */
+    public static final String COLUMNS =
+        "hikes.id, hikes.name, hikes.location, hikes.date, hikes.time, hikes.length, " +
+        "hikes.difficulty, hikes.syncStatus, " +
+        "(SELECT COUNT(*) FROM observations WHERE observations.hikeId = hikes.id " +
+        "AND observations.isDeleted = 0) AS observationCount, " +
+        "(SELECT COALESCE(observations.imageUri, observations.cloudImageUrl) FROM observations " +
+        "WHERE observations.hikeId = hikes.id AND observations.isDeleted = 0 " +
+        "AND (observations.imageUri IS NOT NULL OR observations.cloudImageUrl IS NOT NULL) " +
+        "ORDER BY observations.time DESC LIMIT 1) AS coverImage";
+    
+    public long id;
+    public String name;
+    public String location;
+    public String date;  // ISO format: YYYY-MM-DD
+    public String time;  // ISO format: HH:mm
+    public float length;  // In kilometers
+    public String difficulty;  // "Easy", "Medium", "Hard"
+    public int syncStatus;  // 0 = local only, 1 = synced to cloud
+    public int observationCount;  // Observations not marked as deleted
+    public String coverImage;  // Local path or cloud URL of the latest observation photo, null if none
+    
+    public HikeSummary() {}
+}
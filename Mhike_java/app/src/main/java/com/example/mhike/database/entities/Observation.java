@@ -6,6 +6,10 @@ import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import com.example.mhike.database.CloudTimestampAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+
 /**
  * Observation entity for local SQLite storage.
  * Observations are timestamped observations attached to a Hike.
@@ -19,7 +23,13 @@ import androidx.room.PrimaryKey;
         childColumns = "hikeId",
         onDelete = ForeignKey.CASCADE
     ),
-    indices = @Index("hikeId")
+    indices = {
+        @Index(value = {"hikeId", "isDeleted", "time"}),
+        @Index(value = "cloudId", unique = true),
+        @Index(value = {"syncStatus", "createdAt"}),
+        @Index(value = {"isDeleted", "time"}),
+        @Index(value = "imageUri")
+    }
 )
 public class Observation {
     
@@ -50,9 +60,18 @@ public class Observation {
     public int confirmations;  // Number of confirmations from community
     public int disputes;  // Number of disputes from community
     public int syncStatus;  // 0 = local only, 1 = synced to cloud
+    public boolean isDeleted;  // 0 = active, 1 = deleted (marked for deletion sync)
+    public String dirtyFields;  // Comma-separated payload fields edited since the last upload (null = none)
+    public long version;  // Incremented on every local edit; guards marking a row synced
+    @SerializedName("rowversion")
+    public long cloudVersion;  // Cloud row version last seen (0 = unknown); PATCHes are based on it
     
     // Metadata
+    @SerializedName(value = "createdat", alternate = "createdAt")
+    @JsonAdapter(CloudTimestampAdapter.class)
     public long createdAt;  // Timestamp in milliseconds
+    @SerializedName(value = "updatedat", alternate = "updatedAt")
+    @JsonAdapter(CloudTimestampAdapter.class)
     public long updatedAt;  // Timestamp in milliseconds
     
     public Observation() {}
@@ -0,0 +1,21 @@
+package com.example.mhike.database.entities;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * ObservationFts - Full-text index over the searchable text of observations
+ * An external-content FTS4 table: it stores only the index, reads the text from
+ * the observations table, and Room keeps it in sync with triggers on observations.
+ * Its rowid is the observation's local ID.
+ */
+@Fts4(contentEntity = Observation.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "observations_fts")
+public class ObservationFts {
+    
+    public String title;
+    public String comments;
+    
+    public ObservationFts() {}
+}
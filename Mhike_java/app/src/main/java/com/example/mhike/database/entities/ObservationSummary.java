@@ -0,0 +1,30 @@
+package com.example.mhike.database.entities;
+
+/**
+ * ObservationSummary - The columns an observation list row shows, read instead of the full Observation
+ * Leaves out cloud IDs, community counters, sync bookkeeping and timestamps.
+ * Queries select COLUMNS from observations; load the full Observation by id to edit it.
+ */
+public class ObservationSummary {
+    
+    /**
+     * Select list for "SELECT " + COLUMNS + " FROM observations ..."
+     */
+    public static final String COLUMNS =
+        "observations.id, observations.hikeId, observations.title, observations.time, " +
+        "observations.comments, observations.imageUri, observations.cloudImageUrl, " +
+        "observations.latitude, observations.longitude, observations.status";
+    
+    public long id;
+    public long hikeId;
+    public String title;
+    public String time;  // ISO format: HH:mm
+    public String comments;
+    public String imageUri;  // Local URI to image stored on device
+    public String cloudImageUrl;  // Cloud URL if synced
+    public Float latitude;
+    public Float longitude;
+    public String status;  // "Open", "Verified", "Disputed", etc.
+    
+    public ObservationSummary() {}
+}
@@ -0,0 +1,37 @@
+package com.example.mhike.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * SyncOutboxEntry - A pending upload operation for one local row
+ * Tracks how often the operation failed and when it may be retried, so
+ * rows that keep failing back off instead of slowing down every sync.
+ */
+@Entity(
+    tableName = "sync_outbox",
+    primaryKeys = {"entityType", "localId"}
+)
+public class SyncOutboxEntry {
+    
+    public static final String TYPE_HIKE = "hike";
+    public static final String TYPE_OBSERVATION = "observation";
+    
+    public static final String OP_CREATE = "create";
+    public static final String OP_UPDATE = "update";
+    public static final String OP_DELETE = "delete";
+    
+    @NonNull
+    public String entityType = TYPE_HIKE;  // TYPE_HIKE or TYPE_OBSERVATION
+    public long localId;  // Local row ID
+    public String op;  // OP_CREATE, OP_UPDATE or OP_DELETE
+    
+    // Retry scheduling
+    public int attempts;  // Failed attempts so far
+    public long nextAttemptAt;  // Not retried before this timestamp (0 = due now)
+    public long lastAttemptAt;  // Timestamp of the last failed attempt
+    
+    public long createdAt;  // Timestamp in milliseconds
+    
+    public SyncOutboxEntry() {}
+}
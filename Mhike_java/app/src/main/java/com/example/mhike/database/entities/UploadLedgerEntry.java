@@ -0,0 +1,38 @@
+package com.example.mhike.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * UploadLedgerEntry - Progress of one local row's upload to the cloud
+ * Records the sub-steps already completed (image uploaded, record created) so a
+ * retried sync resumes after the last one instead of repeating it.
+ * The entry is removed once the row is marked as synced.
+ */
+@Entity(
+    tableName = "upload_ledger",
+    primaryKeys = {"entityType", "localId"}
+)
+public class UploadLedgerEntry {
+    
+    public static final String TYPE_HIKE = "hike";
+    public static final String TYPE_OBSERVATION = "observation";
+    
+    @NonNull
+    public String entityType = TYPE_HIKE;  // TYPE_HIKE or TYPE_OBSERVATION
+    public long localId;  // Local row ID
+    
+    // Sent with every create request for this row so the server can drop repeats
+    public String requestKey;
+    
+    // Step 1 (observations): image uploaded
+    public String contentHash;  // SHA-256 of the image that was uploaded
+    public String imageUrl;  // Cloudinary URL it was uploaded to
+    
+    // Step 2: record created in the cloud
+    public String cloudId;
+    
+    public long updatedAt;  // Timestamp in milliseconds
+    
+    public UploadLedgerEntry() {}
+}
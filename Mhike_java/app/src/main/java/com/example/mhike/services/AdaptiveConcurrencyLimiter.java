@@ -0,0 +1,171 @@
+package com.example.mhike.services;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * AdaptiveConcurrencyLimiter - AIMD limit on in-flight requests to one backend
+ * Installed as an OkHttp interceptor; each request waits for a permit before it is sent.
+ * Every response that comes back fast and healthy raises the limit by 1/limit (about +1 per
+ * round of requests); a 429/5xx, a network error or a response much slower than the best
+ * recent latency cuts it multiplicatively. Only one cut is taken per round: responses to
+ * requests sent before the last cut do not cut again.
+ * The permit covers the call up to the response headers, i.e. the server's processing time.
+ */
+public class AdaptiveConcurrencyLimiter implements Interceptor {
+    
+    private static final String TAG = "ConcurrencyLimiter";
+    private static final double ERROR_BACKOFF = 0.5;
+    private static final double LATENCY_BACKOFF = 0.9;
+    // A response slower than this multiple of the best recent latency means requests are queueing
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // Latencies below this never count as slow (keeps a very fast baseline from being too strict)
+    private static final long MIN_SLOW_LATENCY_NANOS = 250_000_000L;
+    // Samples per window of the running minimum latency, so the baseline follows the server
+    private static final int LATENCY_WINDOW = 100;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+    private long baselineLatencyNanos = Long.MAX_VALUE;
+    private long windowMinLatencyNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long requests;
+    private long throttled;
+    private long totalLatencyNanos;
+    
+    /**
+     * Point-in-time view of the limiter, for sync metrics
+     */
+    public static class Metrics {
+        public final int limit;
+        public final long requests;
+        public final long throttled;
+        public final long totalLatencyNanos;
+        
+        Metrics(int limit, long requests, long throttled, long totalLatencyNanos) {
+            this.limit = limit;
+            this.requests = requests;
+            this.throttled = throttled;
+            this.totalLatencyNanos = totalLatencyNanos;
+        }
+        
+        /**
+         * Counters accumulated since an earlier snapshot (the limit is this snapshot's)
+         */
+        public Metrics since(Metrics earlier) {
+            return new Metrics(limit, requests - earlier.requests, throttled - earlier.throttled,
+                totalLatencyNanos - earlier.totalLatencyNanos);
+        }
+        
+        public long averageLatencyMs() {
+            return requests > 0 ? totalLatencyNanos / requests / 1_000_000 : 0;
+        }
+    }
+    
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        acquire();
+        long start = System.nanoTime();
+        try {
+            Response response = chain.proceed(chain.request());
+            int code = response.code();
+            onSample(start, System.nanoTime() - start, code == 429 || code >= 500);
+            return response;
+        } catch (IOException e) {
+            // A cancelled sync is not a sign of overload
+            if (!chain.call().isCanceled() && !Thread.currentThread().isInterrupted()) {
+                onSample(start, System.nanoTime() - start, true);
+            }
+            throw e;
+        } finally {
+            release();
+        }
+    }
+    
+    /**
+     * Current in-flight request limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+    
+    public synchronized Metrics snapshot() {
+        return new Metrics((int) limit, requests, throttled, totalLatencyNanos);
+    }
+    
+    private synchronized void acquire() throws InterruptedIOException {
+        while (inFlight >= (int) limit) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a request permit");
+            }
+        }
+        inFlight++;
+    }
+    
+    private synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+    
+    private synchronized void onSample(long startNanos, long latencyNanos, boolean overloaded) {
+        requests++;
+        totalLatencyNanos += latencyNanos;
+        if (overloaded) {
+            throttled++;
+        } else {
+            updateBaseline(latencyNanos);
+        }
+        
+        boolean slow = !overloaded && baselineLatencyNanos != Long.MAX_VALUE
+            && latencyNanos > MIN_SLOW_LATENCY_NANOS
+            && latencyNanos > baselineLatencyNanos * LATENCY_TOLERANCE;
+        
+        if (overloaded || slow) {
+            // The server already felt the previous cut only for requests sent after it
+            if (startNanos - lastDecreaseNanos < 0) {
+                return;
+            }
+            double previous = limit;
+            limit = Math.max(minLimit, limit * (overloaded ? ERROR_BACKOFF : LATENCY_BACKOFF));
+            lastDecreaseNanos = System.nanoTime();
+            Log.d(TAG, (overloaded ? "Overload" : "Slow response") + ", limit " + (int) previous + " -> " + (int) limit);
+        } else {
+            double previous = limit;
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+            if ((int) limit > (int) previous) {
+                Log.d(TAG, "Limit raised to " + (int) limit);
+                notifyAll();
+            }
+        }
+    }
+    
+    private void updateBaseline(long latencyNanos) {
+        windowMinLatencyNanos = Math.min(windowMinLatencyNanos, latencyNanos);
+        baselineLatencyNanos = Math.min(baselineLatencyNanos, latencyNanos);
+        if (++windowSamples >= LATENCY_WINDOW) {
+            // Start the next window from this one's minimum so the baseline can also rise
+            baselineLatencyNanos = windowMinLatencyNanos;
+            windowMinLatencyNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.mhike.services;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BatchIdMapper - Maps the rows a batch upload endpoint returns back to the request items
+ * A returned row is matched by its echoed clientId. Rows without one are only matched by
+ * position when the server returned exactly one row per item; otherwise a left-out
+ * (rejected) row would shift every later cloud ID onto the wrong local row, so such rows
+ * stay unconfirmed and are retried.
+ */
+final class BatchIdMapper {
+
+    private BatchIdMapper() {}
+
+    /**
+     * @param items the request items, each carrying a "clientId"
+     * @param created the response array of created rows, each with an "id"
+     * @return cloud IDs in request order, null for rows that were not confirmed
+     */
+    static String[] map(JsonArray items, JsonArray created) {
+        String[] cloudIds = new String[items.size()];
+        Map<String, Integer> positionByClientId = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            positionByClientId.put(items.get(i).getAsJsonObject().get("clientId").getAsString(), i);
+        }
+        boolean positional = created.size() == items.size();
+
+        for (int i = 0; i < created.size(); i++) {
+            JsonObject row = created.get(i).getAsJsonObject();
+            String clientId = stringOrNull(row.get("clientId"));
+            Integer position = clientId != null
+                ? positionByClientId.get(clientId)
+                : (positional ? Integer.valueOf(i) : null);
+            String cloudId = stringOrNull(row.get("id"));
+            if (position != null && cloudId != null) {
+                cloudIds[position] = cloudId;
+            }
+        }
+        return cloudIds;
+    }
+
+    private static String stringOrNull(JsonElement value) {
+        if (value == null || value.isJsonNull()) {
+            return null;
+        }
+        String string = value.getAsString();
+        return string.isEmpty() ? null : string;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.mhike.services;
+
+import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.Observation;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * ChangeTracker - Records which upload payload fields a local edit changed
+ * Field names are the cloud payload keys (see SyncService's body builders), so sync can
+ * PATCH exactly the edited fields. Edits made between two syncs accumulate in the row's
+ * dirtyFields and go out together in one request.
+ */
+public final class ChangeTracker {
+    
+    public static final String FIELD_IMAGE_URL = "imageUrl";
+    
+    private ChangeTracker() {}
+    
+    /**
+     * Payload fields that differ between the stored hike and its edited copy
+     */
+    public static Set<String> hikeChanges(Hike before, Hike after) {
+        Set<String> changed = new LinkedHashSet<>();
+        addIfChanged(changed, "name", before.name, after.name);
+        addIfChanged(changed, "location", before.location, after.location);
+        addIfChanged(changed, "length", before.length, after.length);
+        addIfChanged(changed, "difficulty", before.difficulty, after.difficulty);
+        addIfChanged(changed, "description", before.description, after.description);
+        addIfChanged(changed, "privacy", before.privacy, after.privacy);
+        addIfChanged(changed, "lat", before.latitude, after.latitude);
+        addIfChanged(changed, "lng", before.longitude, after.longitude);
+        return changed;
+    }
+    
+    /**
+     * Payload fields that differ between the stored observation and its edited copy
+     */
+    public static Set<String> observationChanges(Observation before, Observation after) {
+        Set<String> changed = new LinkedHashSet<>();
+        addIfChanged(changed, "title", before.title, after.title);
+        addIfChanged(changed, "time", before.time, after.time);
+        addIfChanged(changed, "comments", before.comments, after.comments);
+        addIfChanged(changed, "status", before.status, after.status);
+        addIfChanged(changed, "lat", before.latitude, after.latitude);
+        addIfChanged(changed, "lng", before.longitude, after.longitude);
+        if (!Objects.equals(before.imageUri, after.imageUri)
+                || !Objects.equals(before.cloudImageUrl, after.cloudImageUrl)) {
+            changed.add(FIELD_IMAGE_URL);
+        }
+        return changed;
+    }
+    
+    /**
+     * Stage an edit on a hike about to be written over its stored row
+     * Keeps sync-owned columns from the stored row (the edited copy may predate a sync)
+     * @return whether any payload field changed
+     */
+    public static boolean applyHikeEdit(Hike stored, Hike edited) {
+        Set<String> changed = hikeChanges(stored, edited);
+        edited.cloudId = stored.cloudId;
+        edited.isDeleted = stored.isDeleted;
+        edited.cloudVersion = stored.cloudVersion;
+        edited.version = stored.version + 1;
+        edited.dirtyFields = merge(stored.dirtyFields, changed);
+        edited.syncStatus = changed.isEmpty() ? stored.syncStatus : 0;
+        return !changed.isEmpty();
+    }
+    
+    /**
+     * Stage an edit on an observation about to be written over its stored row
+     * Keeps sync-owned columns from the stored row (the edited copy may predate a sync)
+     * @return whether any payload field changed
+     */
+    public static boolean applyObservationEdit(Observation stored, Observation edited) {
+        Set<String> changed = observationChanges(stored, edited);
+        edited.cloudId = stored.cloudId;
+        edited.cloudVersion = stored.cloudVersion;
+        edited.version = stored.version + 1;
+        edited.dirtyFields = merge(stored.dirtyFields, changed);
+        edited.syncStatus = changed.isEmpty() ? stored.syncStatus : 0;
+        return !changed.isEmpty();
+    }
+    
+    /**
+     * Parse a dirtyFields column (null or empty = no recorded fields)
+     */
+    public static Set<String> parse(String dirtyFields) {
+        if (dirtyFields == null || dirtyFields.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        for (String field : dirtyFields.split(",")) {
+            if (!field.isEmpty()) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+    
+    /**
+     * Union of the recorded dirty fields and newly changed ones, as a dirtyFields value
+     */
+    public static String merge(String dirtyFields, Set<String> changed) {
+        Set<String> fields = new LinkedHashSet<>(parse(dirtyFields));
+        fields.addAll(changed);
+        return fields.isEmpty() ? null : String.join(",", fields);
+    }
+    
+    private static void addIfChanged(Set<String> changed, String field, Object before, Object after) {
+        if (!Objects.equals(before, after)) {
+            changed.add(field);
+        }
+    }
+}
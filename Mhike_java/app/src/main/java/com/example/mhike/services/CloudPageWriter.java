@@ -0,0 +1,120 @@
+package com.example.mhike.services;
+
+import com.example.mhike.database.AppDatabase;
+import com.example.mhike.database.daos.HikeDao;
+import com.example.mhike.database.daos.ObservationDao;
+import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.Observation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CloudPageWriter - Writes a prepared page of downloaded hikes and observations in one transaction
+ * One commit (and journal sync) per page instead of one per row. A failure rolls back the
+ * whole page, so SyncService counts it as failed and does not move its watermark past it.
+ */
+class CloudPageWriter {
+    
+    /**
+     * A downloaded hike waiting to be written, with its downloaded observations
+     * Observations with id 0 are inserted, the others update their local row.
+     */
+    static class PendingHike {
+        final Hike hike;
+        final boolean isNew;
+        final List<Observation> observations = new ArrayList<>();
+        
+        PendingHike(Hike hike, boolean isNew) {
+            this.hike = hike;
+            this.isNew = isNew;
+        }
+    }
+    
+    /**
+     * Rows written by a committed page
+     */
+    static class PageCounts {
+        final int hikesInserted;
+        final int hikesUpdated;
+        final int observationsInserted;
+        final int observationsUpdated;
+        
+        PageCounts(int hikesInserted, int hikesUpdated, int observationsInserted, int observationsUpdated) {
+            this.hikesInserted = hikesInserted;
+            this.hikesUpdated = hikesUpdated;
+            this.observationsInserted = observationsInserted;
+            this.observationsUpdated = observationsUpdated;
+        }
+    }
+    
+    private final AppDatabase database;
+    private final HikeDao hikeDao;
+    private final ObservationDao observationDao;
+    
+    CloudPageWriter(AppDatabase database) {
+        this.database = database;
+        this.hikeDao = database.hikeDao();
+        this.observationDao = database.observationDao();
+    }
+    
+    /**
+     * Write the page in a single transaction
+     * New hikes get their local IDs and observations their parent IDs on success; on failure
+     * nothing is written and new hikes are left without a local ID.
+     * @throws RuntimeException if any write fails (the transaction is rolled back)
+     */
+    PageCounts write(List<PendingHike> pending) {
+        List<Hike> hikeInserts = new ArrayList<>();
+        List<Hike> hikeUpdates = new ArrayList<>();
+        List<Observation> observationInserts = new ArrayList<>();
+        List<Observation> observationUpdates = new ArrayList<>();
+        for (PendingHike entry : pending) {
+            (entry.isNew ? hikeInserts : hikeUpdates).add(entry.hike);
+            for (Observation observation : entry.observations) {
+                (observation.id == 0 ? observationInserts : observationUpdates).add(observation);
+            }
+        }
+        if (pending.isEmpty()) {
+            return new PageCounts(0, 0, 0, 0);
+        }
+        
+        try {
+            database.runInTransaction(() -> {
+                long[] insertedIds = hikeDao.insertAll(hikeInserts);
+                for (int i = 0; i < insertedIds.length; i++) {
+                    hikeInserts.get(i).id = insertedIds[i];
+                }
+                hikeDao.updateAll(hikeUpdates);
+                
+                // Parents now have local IDs, attach their observations
+                for (PendingHike entry : pending) {
+                    for (Observation observation : entry.observations) {
+                        observation.hikeId = entry.hike.id;
+                    }
+                }
+                observationDao.insertAll(observationInserts);
+                observationDao.updateAll(observationUpdates);
+            });
+        } catch (RuntimeException e) {
+            // The IDs assigned inside the transaction were rolled back with it
+            for (Hike hike : hikeInserts) {
+                hike.id = 0;
+            }
+            throw e;
+        }
+        return new PageCounts(hikeInserts.size(), hikeUpdates.size(),
+            observationInserts.size(), observationUpdates.size());
+    }
+    
+    /**
+     * Number of hike and observation rows in a page
+     */
+    static int rowCount(List<PendingHike> pending) {
+        int rows = pending.size();
+        for (PendingHike entry : pending) {
+            rows += entry.observations.size();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.mhike.services;
+
+import android.util.Log;
+
+import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.Observation;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * CloudPayloadDecoder - Streams JSON arrays from the cloud API into entities
+ * Reads the response one array element at a time and hands each decoded row
+ * to a sink, so peak memory is bounded by a single row instead of the payload
+ */
+public class CloudPayloadDecoder {
+    
+    private static final String TAG = "CloudPayloadDecoder";
+    
+    private final Gson gson = new Gson();
+    
+    /**
+     * Receives decoded rows as they come off the stream
+     */
+    public interface RowSink<T> {
+        void onRow(T row);
+    }
+    
+    /**
+     * Maps the cloud's 'id' onto a decoded row
+     */
+    private interface CloudIdMapper<T> {
+        void map(T row, String cloudId);
+    }
+    
+    /**
+     * Decode a JSON array of hikes
+     * @return number of hikes handed to the sink
+     */
+    public int decodeHikes(Reader json, RowSink<Hike> sink) throws IOException {
+        return decodeArray(json, Hike.class, (hike, cloudId) -> {
+            // Map cloud's 'id' field to our 'cloudId' for tracking
+            hike.cloudId = cloudId;
+            // Don't use cloud's id as local primary key - let Room generate it
+            hike.id = 0;
+        }, sink);
+    }
+    
+    /**
+     * Decode a JSON array of observations
+     * @return number of observations handed to the sink
+     */
+    public int decodeObservations(Reader json, RowSink<Observation> sink) throws IOException {
+        return decodeArray(json, Observation.class, (observation, cloudId) -> {
+            observation.cloudId = cloudId;
+            observation.id = 0;
+        }, sink);
+    }
+    
+    private <T> int decodeArray(Reader json, Class<T> type, CloudIdMapper<T> mapper,
+                                RowSink<T> sink) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        int index = 0;
+        int decoded = 0;
+        
+        try {
+            reader.beginArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw malformed(type, index, e);
+        }
+        
+        JsonElement element;
+        while ((element = nextElement(reader, type, index)) != null) {
+            index++;
+            
+            T row;
+            try {
+                JsonObject object = element.getAsJsonObject();
+                row = gson.fromJson(object, type);
+                String cloudId = object.has("id") && !object.get("id").isJsonNull()
+                    ? object.get("id").getAsString()
+                    : "";
+                // Blank IDs become NULL so they never collide on the unique cloudId index
+                mapper.map(row, cloudId.isEmpty() ? null : cloudId);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to parse " + type.getSimpleName() + " " + index + ": " + e.getMessage(), e);
+                continue;
+            }
+            
+            // Outside the malformed-payload handling, so the sink's own exceptions
+            // (e.g. CancellationException, an IllegalStateException) propagate unchanged
+            sink.onRow(row);
+            decoded++;
+        }
+        
+        return decoded;
+    }
+    
+    /**
+     * Read the next element of the array, or close the array and return null at its end
+     * @throws IOException if the payload is malformed
+     */
+    private static JsonElement nextElement(JsonReader reader, Class<?> type, int index) throws IOException {
+        try {
+            if (reader.hasNext()) {
+                // Only the current element is ever materialized as a tree
+                return JsonParser.parseReader(reader);
+            }
+            reader.endArray();
+            return null;
+        } catch (JsonParseException | IllegalStateException e) {
+            throw malformed(type, index, e);
+        }
+    }
+    
+    private static IOException malformed(Class<?> type, int index, RuntimeException cause) {
+        return new IOException("Malformed " + type.getSimpleName() + " payload at element " + (index + 1), cause);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.mhike.services;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.net.Uri;
 import android.util.Log;
 
@@ -10,8 +11,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -21,6 +20,9 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
 
 /**
  * CloudinaryHelper - Handles image uploads to Cloudinary
@@ -38,14 +40,55 @@ public class CloudinaryHelper {
     
     private final OkHttpClient httpClient;
     private final Context context;
+    private volatile ImagePreprocessor imagePreprocessor;
     
     public CloudinaryHelper(Context context, OkHttpClient httpClient) {
         this.context = context.getApplicationContext();
         this.httpClient = httpClient;
+        this.imagePreprocessor = new ImagePreprocessor(context);
+    }
+    
+    /**
+     * Replace the downscale/re-encode settings used before uploads
+     */
+    public void setImagePreprocessor(ImagePreprocessor imagePreprocessor) {
+        this.imagePreprocessor = imagePreprocessor;
+    }
+    
+    /**
+     * Downscale and re-encode an image for upload (blocking, CPU heavy)
+     * @return the prepared image, or null if it is missing or cannot be decoded
+     */
+    public ImagePreprocessor.PreparedImage prepareImage(Uri imageUri) {
+        if (imageUri == null || !canAccessFile(imageUri)) {
+            Log.w(TAG, "Image file no longer exists or is not accessible: " + imageUri);
+            return null;
+        }
+        try {
+            return imagePreprocessor.prepare(imageUri);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to preprocess image " + imageUri + ": " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Upload an image already prepared by prepareImage
+     * @return Cloudinary URL if successful, null if failed
+     */
+    public String uploadImage(ImagePreprocessor.PreparedImage image) {
+        try {
+            return uploadToCloudinary(image.fileName,
+                RequestBody.create(image.bytes, MediaType.parse(image.mimeType)));
+        } catch (IOException e) {
+            Log.e(TAG, "Error uploading image: " + e.getMessage(), e);
+            return null;
+        }
     }
     
     /**
      * Upload image to Cloudinary and return the URL
+     * The image is downscaled and re-encoded first; the original is sent if it cannot be decoded
      * @param imageUri Local URI of the image to upload
      * @return Cloudinary URL if successful, null if failed
      */
@@ -54,23 +97,27 @@ public class CloudinaryHelper {
             return null;
         }
         
+        ImagePreprocessor.PreparedImage prepared = prepareImage(imageUri);
+        if (prepared != null) {
+            return uploadImage(prepared);
+        }
+        return uploadOriginal(imageUri);
+    }
+    
+    /**
+     * Upload an image as it is, without downscaling it
+     * For callers whose prepareImage already failed, so the image is not decoded again
+     * @return Cloudinary URL if successful, null if failed
+     */
+    public String uploadOriginal(Uri imageUri) {
+        if (imageUri == null || !canAccessFile(imageUri)) {
+            Log.w(TAG, "Image file no longer exists or is not accessible: " + imageUri);
+            return null;
+        }
+        
         try {
-            // Check if the file exists before attempting to upload
-            File imageFile = new File(context.getCacheDir(), "temp_image.jpg");
-            if (!canAccessFile(imageUri)) {
-                Log.w(TAG, "Image file no longer exists or is not accessible: " + imageUri);
-                return null;
-            }
-            
-            copyUriToFile(imageUri, imageFile);
-            
-            // Upload to Cloudinary
-            String cloudinaryUrl = uploadToCloudinary(imageFile);
-            
-            // Clean up temp file
-            imageFile.delete();
-            
-            return cloudinaryUrl;
+            // Stream the original straight from its URI; nothing is copied to disk first
+            return uploadToCloudinary("observation.jpg", new UriRequestBody(imageUri));
         } catch (IOException e) {
             Log.e(TAG, "Error uploading image: " + e.getMessage(), e);
             return null;
@@ -104,13 +151,12 @@ public class CloudinaryHelper {
     }
     
     /**
-     * Upload file to Cloudinary using multipart form data
+     * Upload an image body to Cloudinary using multipart form data
      */
-    private String uploadToCloudinary(File imageFile) throws IOException {
+    private String uploadToCloudinary(String fileName, RequestBody fileBody) throws IOException {
         RequestBody requestBody = new MultipartBody.Builder()
             .setType(MultipartBody.FORM)
-            .addFormDataPart("file", imageFile.getName(),
-                RequestBody.create(imageFile, MediaType.parse("image/jpeg")))
+            .addFormDataPart("file", fileName, fileBody)
             .addFormDataPart("upload_preset", CLOUDINARY_UPLOAD_PRESET)
             .addFormDataPart("folder", "mhike_observations")
             .build();
@@ -145,34 +191,39 @@ public class CloudinaryHelper {
     }
     
     /**
-     * Copy content from URI to a file
+     * Request body that streams an image from its URI each time OkHttp writes it
+     * (including retries), so concurrent uploads never share a temp file
      */
-    private void copyUriToFile(Uri uri, File file) throws IOException {
-        // Check if it's a file path or content URI
-        String uriString = uri.toString();
+    private class UriRequestBody extends RequestBody {
+        private final Uri imageUri;
         
-        InputStream inputStream = null;
-        try {
-            // Try to open as content URI first
-            if (uriString.startsWith("content://") || uriString.startsWith("file://")) {
-                inputStream = context.getContentResolver().openInputStream(uri);
-            } else {
-                // If it's a direct file path, open it directly
-                inputStream = new FileInputStream(new File(uriString));
+        UriRequestBody(Uri imageUri) {
+            this.imageUri = imageUri;
+        }
+        
+        @Override
+        public MediaType contentType() {
+            return MediaType.parse("image/jpeg");
+        }
+        
+        @Override
+        public long contentLength() {
+            String uriString = imageUri.toString();
+            if (!uriString.startsWith("content://") && !uriString.startsWith("file://")) {
+                return new File(uriString).length();
             }
-            
-            try (FileOutputStream outputStream = new FileOutputStream(file)) {
-                assert inputStream != null;
-                byte[] buffer = new byte[1024];
-                int length;
-                
-                while ((length = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, length);
-                }
+            try (AssetFileDescriptor descriptor = context.getContentResolver().openAssetFileDescriptor(imageUri, "r")) {
+                // UNKNOWN_LENGTH (-1) makes OkHttp fall back to a chunked upload
+                return descriptor != null ? descriptor.getLength() : -1;
+            } catch (IOException | RuntimeException e) {
+                return -1;
             }
-        } finally {
-            if (inputStream != null) {
-                inputStream.close();
+        }
+        
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            try (Source source = Okio.source(ImagePreprocessor.openImageStream(context, imageUri))) {
+                sink.writeAll(source);
             }
         }
     }
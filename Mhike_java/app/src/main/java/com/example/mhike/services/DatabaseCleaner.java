@@ -47,6 +47,12 @@ public class DatabaseCleaner {
                 
                 // Delete image files directory
                 deleteImageFiles();
+                ObservationImageCache.getInstance(context).clear();
+                
+                // Reset download watermarks so the next cloud download is a full pull
+                new SyncStateStore(context).clear();
+                new UploadLedger(context).clear();
+                new SyncOutbox(context).clear();
                 
                 Log.d(TAG, "All local data cleared successfully");
             } catch (Exception e) {
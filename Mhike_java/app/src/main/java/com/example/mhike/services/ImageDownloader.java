@@ -0,0 +1,221 @@
+package com.example.mhike.services;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.HashingSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * ImageDownloader - Streams remote images straight to disk
+ * Bytes flow from the response source into a .part file (never a whole-image byte[]).
+ * An interrupted transfer resumes with an HTTP Range request (guarded by If-Range on the ETag).
+ * The finished file is checked against the expected length and, when the ETag is a plain MD5
+ * (as Cloudinary serves), against its checksum, then atomically renamed into place.
+ */
+public class ImageDownloader {
+    
+    private static final String TAG = "ImageDownloader";
+    private static final String PART_SUFFIX = ".part";
+    private static final String ETAG_SUFFIX = ".etag";
+    
+    private final OkHttpClient httpClient;
+    
+    // One download per target file at a time, so two callers never share a .part file
+    // (entries are never removed, so waiters and newcomers always agree on the lock)
+    private final ConcurrentHashMap<String, Object> targetLocks = new ConcurrentHashMap<>();
+    
+    public ImageDownloader(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+    
+    /**
+     * Whether a file in a download directory is transfer state rather than a finished image
+     */
+    public static boolean isPartialFile(File file) {
+        String name = file.getName();
+        return name.endsWith(PART_SUFFIX) || name.endsWith(ETAG_SUFFIX);
+    }
+    
+    /**
+     * Download url into target, resuming a previous partial transfer if possible
+     * @return size of the finished file in bytes
+     */
+    public long download(String url, File target) throws IOException {
+        Object lock = targetLocks.computeIfAbsent(target.getAbsolutePath(), key -> new Object());
+        synchronized (lock) {
+            if (target.exists()) {
+                return target.length();
+            }
+            try {
+                return transfer(url, target);
+            } catch (RangeNotSatisfiableException e) {
+                // Stale partial file (e.g. longer than the current remote image), start over
+                discardPartial(target);
+                return transfer(url, target);
+            }
+        }
+    }
+    
+    private long transfer(String url, File target) throws IOException {
+        File dir = target.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        
+        File part = new File(dir, target.getName() + PART_SUFFIX);
+        File etagFile = new File(dir, target.getName() + ETAG_SUFFIX);
+        String savedEtag = readEtag(etagFile);
+        long offset = part.exists() && savedEtag != null ? part.length() : 0;
+        
+        Request.Builder builder = new Request.Builder().url(url).get();
+        if (offset > 0) {
+            // If-Range makes the server send the full image instead if it changed since the first attempt
+            builder.header("Range", "bytes=" + offset + "-");
+            builder.header("If-Range", savedEtag);
+        }
+        
+        try (Response response = httpClient.newCall(builder.build()).execute()) {
+            if (response.code() == 416) {
+                throw new RangeNotSatisfiableException();
+            }
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("HTTP " + response.code() + " for " + url);
+            }
+            
+            boolean resumed = offset > 0 && response.code() == 206;
+            if (!resumed) {
+                offset = 0;
+            }
+            String etag = response.header("ETag");
+            if (etag != null) {
+                writeEtag(etagFile, etag);
+            } else {
+                etagFile.delete();
+            }
+            
+            long expectedLength = expectedLength(response, body, offset);
+            
+            try (Source source = body.source();
+                 BufferedSink sink = Okio.buffer(resumed ? Okio.appendingSink(part) : Okio.sink(part))) {
+                sink.writeAll(source);
+            }
+            if (resumed) {
+                Log.d(TAG, "Resumed " + url + " from byte " + offset);
+            }
+            
+            verify(part, expectedLength, etag);
+            Files.move(part.toPath(), target.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            etagFile.delete();
+            return target.length();
+        }
+    }
+    
+    /**
+     * Total length the finished file must have, or -1 when the server did not say
+     */
+    private long expectedLength(Response response, ResponseBody body, long offset) {
+        String contentRange = response.header("Content-Range");
+        if (contentRange != null) {
+            int slash = contentRange.lastIndexOf('/');
+            if (slash >= 0 && !contentRange.endsWith("*")) {
+                try {
+                    return Long.parseLong(contentRange.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    Log.w(TAG, "Ignoring invalid Content-Range header: " + contentRange);
+                }
+            }
+        }
+        long contentLength = body.contentLength();
+        return contentLength >= 0 ? offset + contentLength : -1;
+    }
+    
+    /**
+     * Check the finished .part file; a mismatch discards it so the next attempt starts clean
+     */
+    private void verify(File part, long expectedLength, String etag) throws IOException {
+        if (expectedLength >= 0 && part.length() != expectedLength) {
+            rejectPartial(part, expectedLength + " bytes expected, got " + part.length());
+        }
+        
+        String expectedMd5 = md5FromEtag(etag);
+        if (expectedMd5 != null) {
+            String actualMd5 = md5Of(part);
+            if (!expectedMd5.equals(actualMd5)) {
+                rejectPartial(part, "MD5 " + actualMd5 + " does not match ETag " + etag);
+            }
+        }
+    }
+    
+    private void rejectPartial(File part, String reason) throws IOException {
+        part.delete();
+        new File(part.getParentFile(), part.getName().replace(PART_SUFFIX, ETAG_SUFFIX)).delete();
+        throw new IOException("Corrupt download: " + reason);
+    }
+    
+    private void discardPartial(File target) {
+        new File(target.getParentFile(), target.getName() + PART_SUFFIX).delete();
+        new File(target.getParentFile(), target.getName() + ETAG_SUFFIX).delete();
+    }
+    
+    /**
+     * Strong ETags that are 32 hex digits are taken to be the content MD5
+     */
+    private static String md5FromEtag(String etag) {
+        if (etag == null || etag.startsWith("W/")) {
+            return null;
+        }
+        String value = etag.replace("\"", "").toLowerCase();
+        return value.matches("[0-9a-f]{32}") ? value : null;
+    }
+    
+    private static String md5Of(File file) throws IOException {
+        try (Source source = Okio.source(file);
+             HashingSink hashingSink = HashingSink.md5(Okio.blackhole())) {
+            Buffer buffer = new Buffer();
+            while (source.read(buffer, 8192) != -1) {
+                hashingSink.write(buffer, buffer.size());
+            }
+            ByteString hash = hashingSink.hash();
+            return hash.hex();
+        }
+    }
+    
+    private static String readEtag(File etagFile) {
+        if (!etagFile.exists()) {
+            return null;
+        }
+        try (Source source = Okio.source(etagFile)) {
+            return Okio.buffer(source).readUtf8().trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private static void writeEtag(File etagFile, String etag) throws IOException {
+        try (BufferedSink sink = Okio.buffer(Okio.sink(etagFile))) {
+            sink.writeUtf8(etag);
+        }
+    }
+    
+    private static class RangeNotSatisfiableException extends IOException {
+        RangeNotSatisfiableException() {
+            super("HTTP 416");
+        }
+    }
+}
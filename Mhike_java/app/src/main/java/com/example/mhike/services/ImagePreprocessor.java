@@ -0,0 +1,197 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ImagePreprocessor - Shrinks observation photos before they are uploaded
+ * Decodes with a power-of-two sample size, scales to a maximum dimension,
+ * applies the EXIF orientation and re-encodes at a target quality, so a
+ * multi-megabyte camera photo is sent as a few hundred kilobytes.
+ * Runs on the caller's thread; SyncService drives it from a separate encode pool.
+ */
+public class ImagePreprocessor {
+    
+    private static final String TAG = "ImagePreprocessor";
+    public static final int DEFAULT_MAX_DIMENSION = 1600;
+    public static final int DEFAULT_QUALITY = 80;
+    
+    private final Context context;
+    private final int maxDimension;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    
+    /**
+     * Encoded image ready to upload
+     */
+    public static class PreparedImage {
+        public final byte[] bytes;
+        public final String mimeType;
+        public final String fileName;
+        
+        PreparedImage(byte[] bytes, String mimeType, String fileName) {
+            this.bytes = bytes;
+            this.mimeType = mimeType;
+            this.fileName = fileName;
+        }
+    }
+    
+    /**
+     * Preprocessor with the default settings (1600px, JPEG, quality 80)
+     */
+    public ImagePreprocessor(Context context) {
+        this(context, DEFAULT_MAX_DIMENSION, Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY);
+    }
+    
+    /**
+     * @param maxDimension longest edge of the uploaded image in pixels
+     * @param format JPEG or WEBP_LOSSY
+     * @param quality encoder quality, 0-100
+     */
+    public ImagePreprocessor(Context context, int maxDimension, Bitmap.CompressFormat format, int quality) {
+        this.context = context.getApplicationContext();
+        this.maxDimension = Math.max(1, maxDimension);
+        this.format = format;
+        this.quality = Math.max(0, Math.min(100, quality));
+    }
+    
+    /**
+     * Decode, orient, downscale and re-encode an image
+     * @param imageUri content URI, file URI or plain file path
+     * @return the encoded image, or null if it could not be decoded
+     */
+    public PreparedImage prepare(Uri imageUri) throws IOException {
+        // Pass 1: dimensions only, to pick a sample size without allocating the full bitmap
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = openImageStream(context, imageUri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            Log.w(TAG, "Not a decodable image: " + imageUri);
+            return null;
+        }
+        
+        int orientation;
+        try (InputStream in = openImageStream(context, imageUri)) {
+            orientation = new ExifInterface(in).getAttributeInt(
+                ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        }
+        
+        // Pass 2: sampled decode (at least maxDimension on the long edge, at most 2x it)
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight);
+        Bitmap decoded;
+        try (InputStream in = openImageStream(context, imageUri)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            Log.w(TAG, "Failed to decode image: " + imageUri);
+            return null;
+        }
+        
+        Bitmap output = transform(decoded, orientation);
+        try {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            output.compress(format, quality, encoded);
+            Log.d(TAG, "Prepared " + imageUri + ": " + bounds.outWidth + "x" + bounds.outHeight +
+                       " -> " + output.getWidth() + "x" + output.getHeight() + ", " + encoded.size() + " bytes");
+            
+            boolean webp = format != Bitmap.CompressFormat.JPEG && format != Bitmap.CompressFormat.PNG;
+            return webp
+                ? new PreparedImage(encoded.toByteArray(), "image/webp", "observation.webp")
+                : new PreparedImage(encoded.toByteArray(), "image/jpeg", "observation.jpg");
+        } finally {
+            if (output != decoded) {
+                output.recycle();
+            }
+            decoded.recycle();
+        }
+    }
+    
+    /**
+     * Largest power of two that keeps the long edge at or above maxDimension
+     */
+    private int sampleSizeFor(int width, int height) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+    
+    /**
+     * Scale to maxDimension and rotate/flip per EXIF in a single pass
+     */
+    private Bitmap transform(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        
+        int longEdge = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longEdge > maxDimension) {
+            float scale = (float) maxDimension / longEdge;
+            matrix.postScale(scale, scale);
+        }
+        
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(270);
+                matrix.postScale(-1, 1);
+                break;
+            default:
+                break;
+        }
+        
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+    
+    /**
+     * Open an image given as a content/file URI or as a plain file path
+     */
+    static InputStream openImageStream(Context context, Uri uri) throws IOException {
+        String uriString = uri.toString();
+        InputStream in;
+        if (uriString.startsWith("content://") || uriString.startsWith("file://")) {
+            in = context.getContentResolver().openInputStream(uri);
+        } else {
+            in = new FileInputStream(new File(uriString));
+        }
+        if (in == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        return in;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * ObservationImageCache - Size-bounded disk cache for downloaded observation images
+ * Cloud sync only stores the remote image URL; the bytes are fetched here the first
+ * time a screen needs them. Files live under cacheDir/observation_images, are named
+ * by a hash of the URL, and the least recently used ones are evicted past the limit.
+ */
+public class ObservationImageCache {
+    
+    private static final String TAG = "ObservationImageCache";
+    private static final String CACHE_DIR_NAME = "observation_images";
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int LOAD_THREADS = 2;
+    
+    private static volatile ObservationImageCache INSTANCE;
+    
+    private final File cacheDir;
+    private final ImageDownloader downloader;
+    private final long maxBytes;
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(LOAD_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    // File name -> size, in access order (eldest = least recently used)
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    
+    /**
+     * Callback for asynchronous loads, delivered on the main thread
+     */
+    public interface LoadCallback {
+        void onImageLoaded(String url, File file);
+        void onImageFailed(String url);
+    }
+    
+    private ObservationImageCache(Context context, OkHttpClient httpClient, long maxBytes) {
+        this.cacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        this.downloader = new ImageDownloader(httpClient);
+        this.maxBytes = maxBytes;
+        indexExistingFiles();
+    }
+    
+    /**
+     * Get the process-wide cache instance
+     */
+    public static ObservationImageCache getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ObservationImageCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ObservationImageCache(context.getApplicationContext(),
+                        new OkHttpClient(), DEFAULT_MAX_BYTES);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+    
+    /**
+     * Get the cached file for a URL without touching the network
+     * @return the file, or null if it has not been downloaded (or was evicted)
+     */
+    public synchronized File getCachedFile(String url) {
+        String name = fileNameFor(url);
+        if (entries.get(name) == null) {
+            return null;
+        }
+        File file = new File(cacheDir, name);
+        if (!file.exists()) {
+            forget(name);
+            return null;
+        }
+        // Persist recency so the LRU order survives a restart
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+    
+    /**
+     * Load an image asynchronously, downloading it on first use
+     * The callback runs on the main thread
+     */
+    public void load(String url, LoadCallback callback) {
+        File cached = getCachedFile(url);
+        if (cached != null) {
+            callback.onImageLoaded(url, cached);
+            return;
+        }
+        
+        loadExecutor.execute(() -> {
+            File file = fetch(url);
+            mainHandler.post(() -> {
+                if (file != null) {
+                    callback.onImageLoaded(url, file);
+                } else {
+                    callback.onImageFailed(url);
+                }
+            });
+        });
+    }
+    
+    /**
+     * Get the cached file for a URL, downloading it first if needed (blocking call)
+     * @return the file, or null if the download failed
+     */
+    public File fetch(String url) {
+        File cached = getCachedFile(url);
+        if (cached != null) {
+            return cached;
+        }
+        
+        String name = fileNameFor(url);
+        File target = new File(cacheDir, name);
+        try {
+            long size = downloader.download(url, target);
+            synchronized (this) {
+                Long previous = entries.put(name, size);
+                totalBytes += size - (previous != null ? previous : 0);
+                trimToSize();
+            }
+            return target;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to download observation image " + url + ": " + e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Drop every cached image (local data was wiped)
+     */
+    public synchronized void clear() {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        entries.clear();
+        totalBytes = 0;
+    }
+    
+    /**
+     * Evict least recently used files until the cache fits its size limit
+     * Caller must hold the lock
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(cacheDir, entry.getKey()).delete();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            Log.d(TAG, "Evicted " + entry.getKey() + " (" + entry.getValue() + " bytes)");
+        }
+    }
+    
+    private void forget(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+    
+    /**
+     * Rebuild the LRU index from disk, oldest modification first
+     */
+    private void indexExistingFiles() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (ImageDownloader.isPartialFile(file)) {
+                // Interrupted download, resumed the next time its image is requested
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+    }
+    
+    private static String fileNameFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            return String.format("%040x", new BigInteger(1, digest)) + ".img";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.mhike.database.AppDatabase;
+import com.example.mhike.database.daos.ObservationDao;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ObservationImageStore - Content-addressed storage for observation photos
+ * Files live under filesDir/observations and are named by the SHA-256 of their bytes,
+ * so saving the same photo twice stores it once and names can never collide.
+ * An image's reference count is the number of observation rows pointing at it plus the
+ * saves not yet written to a row (see commit); release() deletes the file once that
+ * count drops to zero. Saving and releasing are serialized across all instances.
+ */
+public class ObservationImageStore {
+    
+    private static final String TAG = "ObservationImageStore";
+    private static final String IMAGES_DIR_NAME = "observations";
+    private static final int JPEG_QUALITY = 85;
+    
+    // Saved images no row points at yet: path -> number of saves; also guards save/release
+    private static final Map<String, Integer> PENDING_SAVES = new HashMap<>();
+    
+    private final File imagesDir;
+    private final ObservationDao observationDao;
+    
+    public ObservationImageStore(Context context) {
+        this.imagesDir = new File(context.getApplicationContext().getFilesDir(), IMAGES_DIR_NAME);
+        this.observationDao = AppDatabase.getInstance(context).observationDao();
+    }
+    
+    /**
+     * Encode a bitmap as JPEG and store it under its content hash
+     * The image counts as referenced until commit() is called for it, so a release() of
+     * another row sharing the same content cannot delete it in the meantime.
+     * @return absolute path of the stored image (an existing file if the content was already stored)
+     */
+    public String save(Bitmap bitmap) throws IOException {
+        if (!imagesDir.exists() && !imagesDir.mkdirs()) {
+            throw new IOException("Cannot create " + imagesDir);
+        }
+        
+        // Hash while encoding so the bytes are only written once
+        File temp = File.createTempFile("incoming_", ".tmp", imagesDir);
+        try {
+            MessageDigest digest = newDigest();
+            try (OutputStream out = new DigestOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)), digest)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            }
+            
+            File target = new File(imagesDir, toHex(digest.digest()) + ".jpg");
+            synchronized (PENDING_SAVES) {
+                if (target.exists()) {
+                    Log.d(TAG, "Image already stored, reusing " + target.getName());
+                } else {
+                    Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+                PENDING_SAVES.merge(target.getAbsolutePath(), 1, Integer::sum);
+            }
+            return target.getAbsolutePath();
+        } finally {
+            temp.delete();
+        }
+    }
+    
+    /**
+     * Whether a path points into this store (as opposed to a content URI or cache file)
+     */
+    public boolean contains(String path) {
+        return path != null && imagesDir.equals(new File(path).getParentFile());
+    }
+    
+    /**
+     * Hand a saved image's reference over to the observation row now pointing at it
+     * Call once per save(), after the row was written
+     */
+    public void commit(String path) {
+        if (!contains(path)) {
+            return;
+        }
+        synchronized (PENDING_SAVES) {
+            Integer pending = PENDING_SAVES.get(path);
+            if (pending == null) {
+                return;
+            }
+            if (pending > 1) {
+                PENDING_SAVES.put(path, pending - 1);
+            } else {
+                PENDING_SAVES.remove(path);
+            }
+        }
+    }
+    
+    /**
+     * Delete a stored image if no observation references it any more and no save is pending
+     * Call after the row that used it was deleted or repointed (blocking call)
+     */
+    public void release(String path) {
+        if (!contains(path)) {
+            return;
+        }
+        synchronized (PENDING_SAVES) {
+            if (PENDING_SAVES.containsKey(path) || observationDao.countObservationsWithImageSync(path) > 0) {
+                return;
+            }
+            boolean deleted = new File(path).delete();
+            Log.d(TAG, "Released unreferenced image " + path + ": " + deleted);
+        }
+    }
+    
+    /**
+     * Delete every stored image that no observation references (blocking call)
+     */
+    public void purgeUnreferenced() {
+        File[] files = imagesDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            // Skip saves still in progress
+            if (file.isFile() && !file.getName().endsWith(".tmp")) {
+                release(file.getAbsolutePath());
+            }
+        }
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String toHex(byte[] hash) {
+        return String.format("%064x", new BigInteger(1, hash));
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * SyncCoordinator - Process-wide entry point for starting syncs
+ * At most one upload sync and one download sync run at a time. A request that arrives
+ * while a sync of the same kind is running does not start another one: its callback is
+ * attached to the running sync (and caught up on its progress) and receives the same result.
+ * Callbacks run on the same threads SyncService uses for them; each run delivers its events
+ * one at a time, so a late joiner sees the catch-up before any later event and never after the result.
+ */
+public class SyncCoordinator {
+    
+    private static final String TAG = "SyncCoordinator";
+    
+    private static volatile SyncCoordinator INSTANCE;
+    
+    private final Context context;
+    
+    // Guarded by this
+    private UploadRun uploadRun;
+    private DownloadRun downloadRun;
+    
+    private SyncCoordinator(Context context) {
+        this.context = context;
+    }
+    
+    /**
+     * Get the process-wide coordinator instance
+     */
+    public static SyncCoordinator getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SyncCoordinator.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SyncCoordinator(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+    
+    /**
+     * Upload offline hikes and observations, or join the upload already in progress
+     */
+    public void syncOfflineToCloud(String authToken, SyncService.SyncCallback callback) {
+        while (true) {
+            UploadRun run;
+            boolean start;
+            synchronized (this) {
+                start = uploadRun == null;
+                if (start) {
+                    uploadRun = new UploadRun(callback);
+                }
+                run = uploadRun;
+            }
+            
+            if (start) {
+                run.setHandle(new SyncService(context, new OkHttpClient(), authToken).syncAllOfflineHikes(run));
+                return;
+            }
+            if (run.join(callback)) {
+                Log.d(TAG, "Upload sync already running, joined it");
+                return;
+            }
+            // The run delivered its result before we could attach; start a fresh one
+            run.detach();
+        }
+    }
+    
+    /**
+     * Download hikes from the cloud, or join the download already in progress
+     */
+    public void syncCloudToOffline(String authToken, SyncService.CloudSyncCallback callback) {
+        while (true) {
+            DownloadRun run;
+            boolean start;
+            synchronized (this) {
+                start = downloadRun == null;
+                if (start) {
+                    downloadRun = new DownloadRun(callback);
+                }
+                run = downloadRun;
+            }
+            
+            if (start) {
+                run.setHandle(new SyncService(context, new OkHttpClient(), authToken).syncCloudToOffline(run));
+                return;
+            }
+            if (run.join(callback)) {
+                Log.d(TAG, "Download sync already running, joined it");
+                return;
+            }
+            // The run delivered its result before we could attach; start a fresh one
+            run.detach();
+        }
+    }
+    
+    /**
+     * Restart the syncs a previous process was killed in the middle of
+     * Completed rows and download pages are not redone (see SyncService)
+     */
+    public void resumeIfInterrupted(String authToken) {
+        if (authToken == null) {
+            return;
+        }
+        SyncStateStore stateStore = new SyncStateStore(context);
+        if (stateStore.isUploadInterrupted() && !isUploadRunning()) {
+            Log.d(TAG, "Resuming interrupted upload sync");
+            syncOfflineToCloud(authToken, null);
+        }
+        if (stateStore.isDownloadInterrupted() && !isDownloadRunning()) {
+            Log.d(TAG, "Resuming interrupted download sync");
+            syncCloudToOffline(authToken, null);
+        }
+    }
+    
+    /**
+     * Cancel the running upload sync, if any; its callbacks receive onSyncError("Sync cancelled")
+     * A cancel that arrives while the sync is still starting is applied once it has started.
+     */
+    public void cancelUpload() {
+        UploadRun run;
+        synchronized (this) {
+            run = uploadRun;
+        }
+        if (run != null) {
+            run.cancel();
+        }
+    }
+    
+    /**
+     * Cancel the running download sync, if any; its callbacks receive onCloudSyncError("Sync cancelled")
+     * A cancel that arrives while the sync is still starting is applied once it has started.
+     */
+    public void cancelDownload() {
+        DownloadRun run;
+        synchronized (this) {
+            run = downloadRun;
+        }
+        if (run != null) {
+            run.cancel();
+        }
+    }
+    
+    /**
+     * Whether an upload sync is in progress
+     */
+    public synchronized boolean isUploadRunning() {
+        return uploadRun != null;
+    }
+    
+    /**
+     * Whether a download sync is in progress
+     */
+    public synchronized boolean isDownloadRunning() {
+        return downloadRun != null;
+    }
+    
+    /**
+     * One running sync and its attached callbacks
+     * Events, joins and cancels are serialized on the run's own lock (never while holding the
+     * coordinator's), so every callback gets start, progress and result exactly once and in order.
+     */
+    private abstract class Run<C> {
+        private final List<C> callbacks = new ArrayList<>();
+        private SyncService.SyncRun handle;
+        private boolean cancelRequested;
+        private boolean finished;
+        
+        Run(C callback) {
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+        }
+        
+        /**
+         * Attach a callback that joined late and replay the progress so far to it
+         * @return false if the run already delivered its result (the caller starts a new one)
+         */
+        synchronized boolean join(C callback) {
+            if (finished) {
+                return false;
+            }
+            if (callback != null) {
+                catchUp(callback);
+                callbacks.add(callback);
+            }
+            return true;
+        }
+        
+        /**
+         * Replay the progress so far to a callback that joined late (called under the run's lock)
+         */
+        abstract void catchUp(C callback);
+        
+        /**
+         * Detach this run so the next request starts a fresh sync
+         */
+        abstract void detach();
+        
+        void setHandle(SyncService.SyncRun handle) {
+            boolean cancel;
+            synchronized (this) {
+                this.handle = handle;
+                cancel = cancelRequested;
+            }
+            if (cancel) {
+                handle.cancel();
+            }
+        }
+        
+        void cancel() {
+            SyncService.SyncRun handle;
+            synchronized (this) {
+                cancelRequested = true;
+                handle = this.handle;
+            }
+            if (handle != null) {
+                handle.cancel();
+            }
+        }
+        
+        /**
+         * Deliver an event to every attached callback
+         */
+        synchronized void dispatch(Consumer<C> event) {
+            for (C callback : callbacks) {
+                event.accept(callback);
+            }
+        }
+        
+        /**
+         * Deliver the result to every attached callback; later joiners start a new run
+         */
+        void finish(Consumer<C> result) {
+            synchronized (this) {
+                finished = true;
+                dispatch(result);
+            }
+            detach();
+        }
+    }
+    
+    /**
+     * One running upload sync, fanning its events out to every attached callback
+     */
+    private class UploadRun extends Run<SyncService.SyncCallback> implements SyncService.SyncCallback {
+        // Guarded by the run's lock
+        private int total = -1;
+        private int completed;
+        
+        UploadRun(SyncService.SyncCallback callback) {
+            super(callback);
+        }
+        
+        @Override
+        void catchUp(SyncService.SyncCallback callback) {
+            if (total >= 0) {
+                callback.onSyncStart(total);
+                if (completed > 0) {
+                    callback.onSyncProgress(completed, total);
+                }
+            }
+        }
+        
+        @Override
+        void detach() {
+            synchronized (SyncCoordinator.this) {
+                if (uploadRun == this) {
+                    uploadRun = null;
+                }
+            }
+        }
+        
+        @Override
+        public synchronized void onSyncStart(int totalHikes) {
+            total = totalHikes;
+            dispatch(callback -> callback.onSyncStart(totalHikes));
+        }
+        
+        @Override
+        public synchronized void onSyncProgress(int completed, int total) {
+            this.completed = completed;
+            dispatch(callback -> callback.onSyncProgress(completed, total));
+        }
+        
+        @Override
+        public void onSyncSuccess(SyncService.SyncResult result) {
+            finish(callback -> callback.onSyncSuccess(result));
+        }
+        
+        @Override
+        public void onSyncError(String errorMessage) {
+            finish(callback -> callback.onSyncError(errorMessage));
+        }
+    }
+    
+    /**
+     * One running download sync, fanning its events out to every attached callback
+     */
+    private class DownloadRun extends Run<SyncService.CloudSyncCallback> implements SyncService.CloudSyncCallback {
+        // Guarded by the run's lock
+        private boolean started;
+        private int completed;
+        private int total;
+        
+        DownloadRun(SyncService.CloudSyncCallback callback) {
+            super(callback);
+        }
+        
+        @Override
+        void catchUp(SyncService.CloudSyncCallback callback) {
+            if (started) {
+                callback.onCloudSyncStart();
+                if (total > 0) {
+                    callback.onCloudSyncProgress(completed, total);
+                }
+            }
+        }
+        
+        @Override
+        void detach() {
+            synchronized (SyncCoordinator.this) {
+                if (downloadRun == this) {
+                    downloadRun = null;
+                }
+            }
+        }
+        
+        @Override
+        public synchronized void onCloudSyncStart() {
+            started = true;
+            dispatch(SyncService.CloudSyncCallback::onCloudSyncStart);
+        }
+        
+        @Override
+        public synchronized void onCloudSyncProgress(int completed, int total) {
+            this.completed = completed;
+            this.total = total;
+            dispatch(callback -> callback.onCloudSyncProgress(completed, total));
+        }
+        
+        @Override
+        public void onCloudSyncSuccess(SyncService.CloudSyncResult result) {
+            finish(callback -> callback.onCloudSyncSuccess(result));
+        }
+        
+        @Override
+        public void onCloudSyncError(String errorMessage) {
+            finish(callback -> callback.onCloudSyncError(errorMessage));
+        }
+    }
+}
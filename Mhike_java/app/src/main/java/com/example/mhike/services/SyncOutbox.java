@@ -0,0 +1,141 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.mhike.database.AppDatabase;
+import com.example.mhike.database.daos.SyncOutboxDao;
+import com.example.mhike.database.entities.SyncOutboxEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SyncOutbox - Persistent queue of pending upload operations with retry backoff
+ * Every row waiting to be uploaded or deleted has an entry here. A failed attempt pushes
+ * the entry's next attempt out exponentially (with jitter, so rows that failed together
+ * do not all retry together); sync only works on entries that are due, so rows that keep
+ * failing neither hammer the backend nor slow down every sync.
+ * All methods are blocking and meant for sync background threads.
+ */
+public class SyncOutbox {
+    
+    private static final String TAG = "SyncOutbox";
+    private static final long BASE_BACKOFF_MS = 30_000L;
+    private static final long MAX_BACKOFF_MS = 60 * 60_000L;
+    
+    private final AppDatabase database;
+    private final SyncOutboxDao outboxDao;
+    
+    public SyncOutbox(Context context) {
+        this.database = AppDatabase.getInstance(context);
+        this.outboxDao = database.syncOutboxDao();
+    }
+    
+    /**
+     * Build an entry for a pending operation
+     */
+    public static SyncOutboxEntry entry(String entityType, long localId, String op) {
+        SyncOutboxEntry entry = new SyncOutboxEntry();
+        entry.entityType = entityType;
+        entry.localId = localId;
+        entry.op = op;
+        entry.createdAt = System.currentTimeMillis();
+        return entry;
+    }
+    
+    /**
+     * Bring the outbox in line with the rows that are pending right now
+     * New operations are queued as due, entries whose operation changed start over,
+     * and entries for rows that no longer need syncing are dropped.
+     * @return keys (see key()) of the pending operations that are due now
+     */
+    public Set<String> reconcile(List<SyncOutboxEntry> pending) {
+        Set<String> due = new HashSet<>();
+        database.runInTransaction(() -> {
+            outboxDao.insertIfAbsent(pending);
+            
+            Map<String, SyncOutboxEntry> pendingByKey = new HashMap<>();
+            for (SyncOutboxEntry entry : pending) {
+                pendingByKey.put(key(entry.entityType, entry.localId), entry);
+            }
+            
+            long now = System.currentTimeMillis();
+            List<SyncOutboxEntry> stale = new ArrayList<>();
+            for (SyncOutboxEntry queued : outboxDao.getAllSync()) {
+                String key = key(queued.entityType, queued.localId);
+                SyncOutboxEntry current = pendingByKey.get(key);
+                if (current == null) {
+                    stale.add(queued);
+                } else if (!current.op.equals(queued.op)) {
+                    outboxDao.replaceOp(queued.entityType, queued.localId, current.op);
+                    due.add(key);
+                } else if (queued.nextAttemptAt <= now) {
+                    due.add(key);
+                }
+            }
+            for (SyncOutboxEntry entry : stale) {
+                outboxDao.delete(entry.entityType, entry.localId);
+            }
+        });
+        Log.d(TAG, due.size() + " of " + pending.size() + " pending operations are due");
+        return due;
+    }
+    
+    /**
+     * Drop an entry once its operation succeeded
+     */
+    public void recordSuccess(String entityType, long localId) {
+        outboxDao.delete(entityType, localId);
+    }
+    
+    /**
+     * Schedule the next attempt of a failed operation (see retryDelayMs)
+     */
+    public void recordFailure(String entityType, long localId) {
+        int attempts = outboxDao.getAttemptsSync(entityType, localId) + 1;
+        long delay = retryDelayMs(attempts, ThreadLocalRandom.current().nextDouble());
+        
+        long now = System.currentTimeMillis();
+        outboxDao.recordFailure(entityType, localId, now, now + delay);
+        Log.d(TAG, entityType + " " + localId + " failed " + attempts + " time(s), retry in " + delay / 1000 + "s");
+    }
+    
+    /**
+     * Nominal backoff after the given number of failed attempts (1 or more)
+     * Doubles per failure from BASE_BACKOFF_MS up to MAX_BACKOFF_MS
+     */
+    static long backoffMs(int attempts) {
+        long backoff = BASE_BACKOFF_MS << Math.min(Math.max(attempts, 1) - 1, 20);
+        return Math.min(backoff, MAX_BACKOFF_MS);
+    }
+    
+    /**
+     * Delay before the next attempt: drawn from the upper half of the nominal backoff,
+     * so it never drops below half of it and rows that failed together spread out
+     * @param jitter uniform random value in [0, 1)
+     */
+    static long retryDelayMs(int attempts, double jitter) {
+        long backoff = backoffMs(attempts);
+        return backoff / 2 + (long) (jitter * (backoff - backoff / 2));
+    }
+    
+    /**
+     * Forget every queued operation (local data was wiped, local IDs will be reused)
+     */
+    public void clear() {
+        outboxDao.deleteAll();
+    }
+    
+    /**
+     * Key identifying a row across entity types
+     */
+    public static String key(String entityType, long localId) {
+        return entityType + ":" + localId;
+    }
+}
@@ -11,14 +11,38 @@ import com.example.mhike.database.daos.HikeDao;
 import com.example.mhike.database.daos.ObservationDao;
 import com.example.mhike.database.entities.Hike;
 import com.example.mhike.database.entities.Observation;
+import com.example.mhike.database.entities.SyncOutboxEntry;
+import com.example.mhike.database.entities.UploadLedgerEntry;
+import com.example.mhike.services.CloudPageWriter.PendingHike;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -36,6 +60,24 @@ public class SyncService {
     
     private static final String TAG = "SyncService";
     private static final String BASE_URL = "https://kandis-nonappealable-flatly.ngrok-free.dev/api";
+    // In-flight requests to BASE_URL are limited adaptively between 1 and this (see backendLimiter)
+    private static final int MAX_CONCURRENCY_LIMIT = 12;
+    private static final int INITIAL_CONCURRENCY_LIMIT = 4;
+    private static final int DEFAULT_UPLOAD_CONCURRENCY = MAX_CONCURRENCY_LIMIT;
+    private static final int DEFAULT_UPLOAD_BATCH_SIZE = 25;
+    private static final int IMAGE_ENCODE_THREADS = 2;
+    private static final int DOWNLOAD_PAGE_SIZE = 50;
+    private static final int DEFAULT_DOWNLOAD_CONCURRENCY = MAX_CONCURRENCY_LIMIT;
+    // Stay well below SQLite's limit on bound variables per statement
+    private static final int MAX_QUERY_VARIABLES = 500;
+    
+    // Shared by every SyncService so the limit learned for the backend carries over between runs
+    private static final AdaptiveConcurrencyLimiter backendLimiter =
+        new AdaptiveConcurrencyLimiter(INITIAL_CONCURRENCY_LIMIT, 1, MAX_CONCURRENCY_LIMIT);
+    
+    // Cleared process-wide once the server answers a batch request with 404/405/501
+    private static volatile boolean batchUploadsSupported = true;
+    private static volatile boolean batchDeletesSupported = true;
     
     private final Context context;
     private final OkHttpClient httpClient;
@@ -44,6 +86,17 @@ public class SyncService {
     private final String authToken;
     private final AuthService authService;
     private final CloudinaryHelper cloudinaryHelper;
+    private final SyncStateStore syncStateStore;
+    private final UploadLedger uploadLedger;
+    private final SyncOutbox syncOutbox;
+    // Image path -> content hash, so each image is hashed once per sync
+    private final Map<String, String> imageHashes = new ConcurrentHashMap<>();
+    private final AppDatabase database;
+    private final CloudPageWriter pageWriter;
+    private final CloudPayloadDecoder payloadDecoder = new CloudPayloadDecoder();
+    private int uploadConcurrency = DEFAULT_UPLOAD_CONCURRENCY;
+    private int uploadBatchSize = DEFAULT_UPLOAD_BATCH_SIZE;
+    private int downloadConcurrency = DEFAULT_DOWNLOAD_CONCURRENCY;
     
     // Callback interface for offline-to-cloud sync operations
     public interface SyncCallback {
@@ -68,9 +121,14 @@ public class SyncService {
         public int totalHikes;
         public int successfulUploads;
         public int failedUploads;
-        public int skippedHikes;
+        public int skippedHikes;  // Pending rows left for later: retry backoff not expired, or parent hike not in the cloud yet
         public long syncDuration;
         
+        // Backend request metrics for this run (see AdaptiveConcurrencyLimiter)
+        public int concurrencyLimit;  // In-flight request limit at the end of the run
+        public long throttledResponses;  // 429/5xx responses and network errors
+        public long averageLatencyMs;
+        
         @Override
         public String toString() {
             return "SyncResult{" +
@@ -79,6 +137,9 @@ public class SyncService {
                     ", failedUploads=" + failedUploads +
                     ", skippedHikes=" + skippedHikes +
                     ", syncDuration=" + syncDuration + "ms" +
+                    ", concurrencyLimit=" + concurrencyLimit +
+                    ", throttledResponses=" + throttledResponses +
+                    ", averageLatencyMs=" + averageLatencyMs +
                     '}';
         }
     }
@@ -91,43 +152,127 @@ public class SyncService {
         public int successfulInserts;
         public int failedInserts;
         public int skippedDuplicates;
+        public int updatedRows;
         public long syncDuration;
         
+        // Backend request metrics for this run (see AdaptiveConcurrencyLimiter)
+        public int concurrencyLimit;  // In-flight request limit at the end of the run
+        public long throttledResponses;  // 429/5xx responses and network errors
+        public long averageLatencyMs;
+        
         @Override
         public String toString() {
             return "CloudSyncResult{" +
                     "totalDownloaded=" + totalDownloaded +
                     ", successfulInserts=" + successfulInserts +
+                    ", updatedRows=" + updatedRows +
                     ", failedInserts=" + failedInserts +
                     ", skippedDuplicates=" + skippedDuplicates +
                     ", syncDuration=" + syncDuration + "ms" +
+                    ", concurrencyLimit=" + concurrencyLimit +
+                    ", throttledResponses=" + throttledResponses +
+                    ", averageLatencyMs=" + averageLatencyMs +
                     '}';
         }
     }
     
+    /**
+     * Handle to a running sync, returned so the caller can cancel it
+     * Cancelling stops the sync at the next row or page boundary and interrupts its
+     * in-flight work; the sync then reports "Sync cancelled" through onSyncError/onCloudSyncError.
+     * Rows finished before that stay finished.
+     */
+    public static class SyncRun {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final List<ExecutorService> executors = new CopyOnWriteArrayList<>();
+        private volatile Thread thread;
+        
+        public void cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            Log.d(TAG, "Sync cancel requested");
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+            Thread running = thread;
+            if (running != null) {
+                running.interrupt();
+            }
+        }
+        
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+        
+        void start(Runnable body) {
+            thread = new Thread(body);
+            thread.start();
+        }
+        
+        void attach(ExecutorService executor) {
+            executors.add(executor);
+            if (cancelled.get()) {
+                executor.shutdownNow();
+            }
+        }
+        
+        void throwIfCancelled() {
+            if (cancelled.get()) {
+                throw new CancellationException("Sync cancelled");
+            }
+        }
+    }
+    
     public SyncService(Context context, OkHttpClient httpClient, String authToken) {
         this.context = context.getApplicationContext();
-        this.httpClient = httpClient;
+        // Backend calls go through the adaptive limiter; Cloudinary uploads are not limited by it
+        this.httpClient = httpClient.newBuilder().addInterceptor(backendLimiter).build();
         this.authToken = authToken;
         this.authService = new AuthService(context, new OkHttpClient());
         this.cloudinaryHelper = new CloudinaryHelper(context, httpClient);
+        this.syncStateStore = new SyncStateStore(context);
+        this.uploadLedger = new UploadLedger(context);
+        this.syncOutbox = new SyncOutbox(context);
         
-        AppDatabase database = AppDatabase.getInstance(context);
+        this.database = AppDatabase.getInstance(context);
         this.hikeDao = database.hikeDao();
         this.observationDao = database.observationDao();
+        this.pageWriter = new CloudPageWriter(database);
     }
     
     /**
      * Sync all offline hikes and observations to the cloud
      * Hikes with syncStatus = 0 will be uploaded, and syncStatus will be updated to 1
      * Observations with syncStatus = 0 will be uploaded, and syncStatus will be updated to 1
-     * Also syncs deleted hikes (isDeleted = 1) by deleting them from cloud
+     * Also syncs deleted hikes and observations (isDeleted = 1) by deleting them from cloud,
+     * several per request (see syncDeletionBatch)
+     * 
+     * Uploads run on a bounded pool (see setUploadConcurrency), with requests to the backend
+     * throttled by an AIMD limiter (see AdaptiveConcurrencyLimiter). Observations are sent with
+     * their parent hike's cloud ID: those whose parent is already in the cloud start right away,
+     * the rest as soon as their own parent hike has been created (see UploadGraph).
+     * Pending rows are sent in batches (see setUploadBatchSize) when the server supports it.
+     * Every pending row is queued in the SyncOutbox; rows whose last attempt failed are
+     * retried only once their backoff has expired and count as skipped until then.
+     * Each finished row is committed as it completes, so a run cut off by a process kill
+     * leaves an interrupted mark (see SyncStateStore) and a rerun picks up the remaining rows.
+     * 
+     * @return a handle to cancel the run
      */
-    public void syncAllOfflineHikes(SyncCallback callback) {
-        new Thread(() -> {
+    public SyncRun syncAllOfflineHikes(SyncCallback callback) {
+        SyncRun run = new SyncRun();
+        run.start(() -> {
+            ExecutorService uploadExecutor = Executors.newFixedThreadPool(uploadConcurrency);
+            // Image downscaling runs here so it overlaps the network uploads
+            ExecutorService encodeExecutor = Executors.newFixedThreadPool(IMAGE_ENCODE_THREADS);
+            run.attach(uploadExecutor);
+            run.attach(encodeExecutor);
+            syncStateStore.setUploadRunning(true);
             try {
                 long startTime = System.currentTimeMillis();
                 SyncResult result = new SyncResult();
+                AdaptiveConcurrencyLimiter.Metrics startMetrics = backendLimiter.snapshot();
                 
                 // Get all offline hikes (syncStatus = 0) - using sync method for background thread
                 List<Hike> offlineHikes = hikeDao.getHikesBySyncStatusSync(0);
@@ -135,19 +280,83 @@ public class SyncService {
                 // Get all offline observations (syncStatus = 0)
                 List<Observation> offlineObservations = observationDao.getObservationsBySyncStatusSync(0);
                 
-                // Also get deleted hikes that need to be synced
+                // Also get deleted hikes and observations that need to be synced
                 List<Hike> deletedHikes = hikeDao.getDeletedHikesSync();
+                List<Observation> deletedObservations = observationDao.getDeletedObservationsSync();
+                
+                // Queue every pending operation; only the ones that are due run in this sync
+                List<SyncOutboxEntry> pending = new ArrayList<>();
+                if (offlineHikes != null) {
+                    for (Hike hike : offlineHikes) {
+                        if (!hike.isDeleted) {
+                            pending.add(SyncOutbox.entry(SyncOutboxEntry.TYPE_HIKE, hike.id,
+                                hike.cloudId == null ? SyncOutboxEntry.OP_CREATE : SyncOutboxEntry.OP_UPDATE));
+                        }
+                    }
+                }
+                if (deletedHikes != null) {
+                    for (Hike hike : deletedHikes) {
+                        pending.add(SyncOutbox.entry(SyncOutboxEntry.TYPE_HIKE, hike.id, SyncOutboxEntry.OP_DELETE));
+                    }
+                }
+                if (offlineObservations != null) {
+                    for (Observation observation : offlineObservations) {
+                        pending.add(SyncOutbox.entry(SyncOutboxEntry.TYPE_OBSERVATION, observation.id,
+                            observation.cloudId == null ? SyncOutboxEntry.OP_CREATE : SyncOutboxEntry.OP_UPDATE));
+                    }
+                }
+                if (deletedObservations != null) {
+                    for (Observation observation : deletedObservations) {
+                        pending.add(SyncOutbox.entry(SyncOutboxEntry.TYPE_OBSERVATION, observation.id,
+                            SyncOutboxEntry.OP_DELETE));
+                    }
+                }
+                Set<String> due = syncOutbox.reconcile(pending);
+                
+                // A deleted hike is only deleted, never uploaded first
+                List<Hike> dueHikes = new ArrayList<>();
+                if (offlineHikes != null) {
+                    for (Hike hike : offlineHikes) {
+                        if (!hike.isDeleted && due.contains(SyncOutbox.key(SyncOutboxEntry.TYPE_HIKE, hike.id))) {
+                            dueHikes.add(hike);
+                        }
+                    }
+                }
+                List<Hike> dueDeletions = new ArrayList<>();
+                if (deletedHikes != null) {
+                    for (Hike hike : deletedHikes) {
+                        if (due.contains(SyncOutbox.key(SyncOutboxEntry.TYPE_HIKE, hike.id))) {
+                            dueDeletions.add(hike);
+                        }
+                    }
+                }
+                List<Observation> dueObservations = new ArrayList<>();
+                if (offlineObservations != null) {
+                    for (Observation observation : offlineObservations) {
+                        if (due.contains(SyncOutbox.key(SyncOutboxEntry.TYPE_OBSERVATION, observation.id))) {
+                            dueObservations.add(observation);
+                        }
+                    }
+                }
+                List<Observation> dueObservationDeletions = new ArrayList<>();
+                if (deletedObservations != null) {
+                    for (Observation observation : deletedObservations) {
+                        if (due.contains(SyncOutbox.key(SyncOutboxEntry.TYPE_OBSERVATION, observation.id))) {
+                            dueObservationDeletions.add(observation);
+                        }
+                    }
+                }
                 
-                int totalToSync = (offlineHikes != null ? offlineHikes.size() : 0) + 
-                                  (deletedHikes != null ? deletedHikes.size() : 0) +
-                                  (offlineObservations != null ? offlineObservations.size() : 0);
+                int totalToSync = dueHikes.size() + dueDeletions.size() + dueObservations.size()
+                    + dueObservationDeletions.size();
+                result.skippedHikes = pending.size() - totalToSync;
                 
                 if (totalToSync == 0) {
                     result.totalHikes = 0;
                     result.successfulUploads = 0;
                     result.failedUploads = 0;
-                    result.skippedHikes = 0;
                     result.syncDuration = System.currentTimeMillis() - startTime;
+                    result.concurrencyLimit = backendLimiter.getLimit();
                     
                     if (callback != null) {
                         callback.onSyncSuccess(result);
@@ -160,83 +369,845 @@ public class SyncService {
                     callback.onSyncStart(result.totalHikes);
                 }
                 
-                // Sync offline hikes (uploads)
-                int completedCount = 0;
-                if (offlineHikes != null) {
-                    for (Hike hike : offlineHikes) {
-                        if (syncHikeToCloud(hike)) {
-                            // Update sync status to 1 (synced)
-                            hike.syncStatus = 1;
-                            hike.updatedAt = System.currentTimeMillis();
-                            hikeDao.update(hike);
-                            result.successfulUploads++;
-                        } else {
-                            result.failedUploads++;
-                        }
-                        
-                        completedCount++;
-                        if (callback != null) {
-                            callback.onSyncProgress(completedCount, result.totalHikes);
-                        }
-                    }
-                }
+                UploadTally tally = new UploadTally(result, callback, syncOutbox, run);
+                UploadGraph graph = new UploadGraph(uploadExecutor, encodeExecutor, tally, run);
                 
-                // Sync deleted hikes (delete from cloud)
-                if (deletedHikes != null) {
-                    for (Hike hike : deletedHikes) {
-                        if (hike.cloudId != null && !hike.cloudId.isEmpty()) {
-                            if (deleteHikeFromCloud(hike.cloudId)) {
-                                // Permanently remove from local database after successful cloud deletion
-                                hikeDao.permanentlyDelete(hike.id);
-                                result.successfulUploads++;
-                            } else {
-                                result.failedUploads++;
-                            }
-                        } else {
-                            // No cloudId, just remove locally
-                            hikeDao.permanentlyDelete(hike.id);
-                            result.successfulUploads++;
-                        }
-                        
-                        completedCount++;
-                        if (callback != null) {
-                            callback.onSyncProgress(completedCount, result.totalHikes);
-                        }
+                // Hikes, deletions and observations with a known parent start at once;
+                // the other observations are queued behind their parent hike
+                List<Observation> readyObservations = graph.plan(dueHikes, dueObservations);
+                for (List<Hike> batch : partition(dueHikes, uploadBatchSize)) {
+                    graph.submit(() -> uploadHikeBatch(batch, graph));
+                }
+                for (List<Hike> batch : partition(dueDeletions, uploadBatchSize)) {
+                    Map<Long, String> tombstones = new LinkedHashMap<>();
+                    for (Hike hike : batch) {
+                        tombstones.put(hike.id, hike.cloudId);
                     }
+                    graph.submit(() -> syncDeletionBatch(SyncOutboxEntry.TYPE_HIKE, tombstones, tally));
                 }
-                
-                // Sync offline observations (uploads)
-                if (offlineObservations != null) {
-                    for (Observation observation : offlineObservations) {
-                        if (syncObservationToCloud(observation)) {
-                            // Update sync status to 1 (synced)
-                            observation.syncStatus = 1;
-                            observation.updatedAt = System.currentTimeMillis();
-                            observationDao.update(observation);
-                            result.successfulUploads++;
-                        } else {
-                            result.failedUploads++;
-                        }
-
-                        completedCount++;
-                        if (callback != null) {
-                            callback.onSyncProgress(completedCount, result.totalHikes);
-                        }
+                for (List<Observation> batch : partition(dueObservationDeletions, uploadBatchSize)) {
+                    Map<Long, String> tombstones = new LinkedHashMap<>();
+                    for (Observation observation : batch) {
+                        tombstones.put(observation.id, observation.cloudId);
                     }
+                    graph.submit(() -> syncDeletionBatch(SyncOutboxEntry.TYPE_OBSERVATION, tombstones, tally));
                 }
+                graph.submitObservations(readyObservations);
+                graph.awaitAll();
+                run.throwIfCancelled();
                 
                 result.syncDuration = System.currentTimeMillis() - startTime;
+                AdaptiveConcurrencyLimiter.Metrics metrics = backendLimiter.snapshot().since(startMetrics);
+                result.concurrencyLimit = metrics.limit;
+                result.throttledResponses = metrics.throttled;
+                result.averageLatencyMs = metrics.averageLatencyMs();
                 
                 if (callback != null) {
                     callback.onSyncSuccess(result);
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Sync error: " + e.getMessage(), e);
-                if (callback != null) {
-                    callback.onSyncError("Sync failed: " + e.getMessage());
-                }
+                if (run.isCancelled()) {
+                    Log.d(TAG, "Sync cancelled");
+                    if (callback != null) {
+                        callback.onSyncError("Sync cancelled");
+                    }
+                } else {
+                    Log.e(TAG, "Sync error: " + e.getMessage(), e);
+                    if (callback != null) {
+                        callback.onSyncError("Sync failed: " + e.getMessage());
+                    }
+                }
+            } finally {
+                uploadExecutor.shutdownNow();
+                encodeExecutor.shutdownNow();
+                syncStateStore.setUploadRunning(false);
+            }
+        });
+        return run;
+    }
+    
+    /**
+     * Set the number of upload workers used by syncAllOfflineHikes.
+     * This caps the uploads in flight; within it the shared adaptive limiter decides how many
+     * requests the backend gets at once. Values below 1 are clamped to 1 (fully sequential).
+     */
+    public void setUploadConcurrency(int concurrency) {
+        this.uploadConcurrency = Math.max(1, concurrency);
+    }
+    
+    /**
+     * Set how many pending rows are packed into one batch upload request.
+     * A size of 1 disables batching and posts every row individually.
+     */
+    public void setUploadBatchSize(int batchSize) {
+        this.uploadBatchSize = Math.max(1, batchSize);
+    }
+    
+    /**
+     * Set the number of per-hike observation fetch workers used by syncCloudToOffline.
+     * This caps the fetches in flight; within it the shared adaptive limiter decides how many
+     * requests the backend gets at once. Values below 1 are clamped to 1 (fully sequential).
+     */
+    public void setDownloadConcurrency(int concurrency) {
+        this.downloadConcurrency = Math.max(1, concurrency);
+    }
+    
+    /**
+     * Cloud IDs are unique locally, so a missing ID must be stored as NULL rather than ""
+     */
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+    
+    /**
+     * Split a list into consecutive chunks of at most chunkSize elements
+     */
+    private static <T> List<List<T>> partition(List<T> items, int chunkSize) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += chunkSize) {
+            chunks.add(items.subList(i, Math.min(i + chunkSize, items.size())));
+        }
+        return chunks;
+    }
+    
+    /**
+     * Upload plan for one sync run: a parent hike -> child observations graph
+     * Observations need their parent hike's cloud ID. Those whose parent is already in the
+     * cloud are ready at once; the others wait for their parent's upload and are submitted
+     * by the worker that finished it, so independent hikes and their observations proceed in
+     * parallel instead of every observation waiting for every hike.
+     */
+    private class UploadGraph {
+        private final CompletionService<Void> completion;
+        private final ExecutorService encodeExecutor;
+        private final UploadTally tally;
+        private final SyncRun run;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // Local hike ID -> cloud ID, for every parent known to exist in the cloud
+        private final Map<Long, String> hikeCloudIds = new ConcurrentHashMap<>();
+        // Local hike ID -> observations waiting for that hike to be created
+        private final Map<Long, List<Observation>> waitingForParent = new ConcurrentHashMap<>();
+        
+        UploadGraph(ExecutorService uploadExecutor, ExecutorService encodeExecutor, UploadTally tally, SyncRun run) {
+            this.completion = new ExecutorCompletionService<>(uploadExecutor);
+            this.encodeExecutor = encodeExecutor;
+            this.tally = tally;
+            this.run = run;
+        }
+        
+        /**
+         * Resolve parent cloud IDs and queue observations behind the hikes this run creates
+         * Observations whose parent is neither in the cloud nor being created now are left for a later run
+         * @return the observations that can be uploaded right away
+         */
+        List<Observation> plan(List<Hike> hikes, List<Observation> observations) {
+            Set<Long> creating = new HashSet<>();
+            for (Hike hike : hikes) {
+                if (hike.cloudId == null) {
+                    creating.add(hike.id);
+                }
+            }
+            
+            Set<Long> parentIds = new HashSet<>();
+            for (Observation observation : observations) {
+                if (!creating.contains(observation.hikeId)) {
+                    parentIds.add(observation.hikeId);
+                }
+            }
+            for (List<Long> chunk : partition(new ArrayList<>(parentIds), MAX_QUERY_VARIABLES)) {
+                for (Hike parent : hikeDao.getHikesByIdsSync(chunk)) {
+                    if (parent.cloudId != null && !parent.isDeleted) {
+                        hikeCloudIds.put(parent.id, parent.cloudId);
+                    }
+                }
+            }
+            
+            List<Observation> ready = new ArrayList<>();
+            for (Observation observation : observations) {
+                if (hikeCloudIds.containsKey(observation.hikeId)) {
+                    ready.add(observation);
+                } else if (creating.contains(observation.hikeId)) {
+                    waitingForParent.computeIfAbsent(observation.hikeId, id -> new ArrayList<>()).add(observation);
+                } else {
+                    Log.w(TAG, "Parent of observation " + observation.title + " is not in the cloud yet, leaving it for later");
+                    tally.skip();
+                }
+            }
+            return ready;
+        }
+        
+        void submit(Runnable task) {
+            outstanding.incrementAndGet();
+            completion.submit(() -> {
+                run.throwIfCancelled();
+                task.run();
+                return null;
+            });
+        }
+        
+        void submitObservations(List<Observation> observations) {
+            for (List<Observation> batch : partition(observations, uploadBatchSize)) {
+                submit(() -> uploadObservationBatch(batch, this, encodeExecutor));
+            }
+        }
+        
+        /**
+         * Record a hike's outcome and release the observations waiting for it
+         */
+        void recordHike(Hike hike, boolean success) {
+            tally.record(SyncOutboxEntry.TYPE_HIKE, hike.id, success);
+            if (success && hike.cloudId != null) {
+                hikeCloudIds.put(hike.id, hike.cloudId);
+            }
+            
+            List<Observation> children = waitingForParent.remove(hike.id);
+            if (children == null) {
+                return;
+            }
+            if (success && hike.cloudId != null) {
+                submitObservations(children);
+            } else {
+                // No parent in the cloud to attach to; they go with the parent's retry
+                for (int i = 0; i < children.size(); i++) {
+                    tally.skip();
+                }
+            }
+        }
+        
+        String parentCloudId(Observation observation) {
+            return hikeCloudIds.get(observation.hikeId);
+        }
+        
+        /**
+         * Wait until every task, including children submitted along the way, has finished
+         * A task submits its children before it completes, so the count cannot reach zero early
+         */
+        void awaitAll() throws InterruptedException {
+            while (outstanding.get() > 0) {
+                Future<Void> future = completion.take();
+                outstanding.decrementAndGet();
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Tasks record their own outcome; this only guards against unexpected errors
+                    Log.e(TAG, "Upload task failed: " + e.getCause(), e.getCause());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Upload one offline hike and mark it as synced locally
+     * Returns true if successful, false otherwise
+     */
+    private boolean uploadOfflineHike(Hike hike) {
+        try {
+            return syncHikeToCloud(hike) && markHikeSynced(hike);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to upload hike " + hike.name + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Update sync status to 1 (synced) after the hike has received its cloud ID
+     * An edit made while the upload was in flight keeps the row pending (see markSyncedIfUnchanged)
+     */
+    private boolean markHikeSynced(Hike hike) {
+        hike.updatedAt = System.currentTimeMillis();
+        hikeDao.markSyncedIfUnchanged(hike.id, hike.cloudId, hike.version, hike.updatedAt, hike.cloudVersion);
+        hike.syncStatus = 1;
+        hike.dirtyFields = null;
+        uploadLedger.complete(UploadLedgerEntry.TYPE_HIKE, hike.id);
+        return true;
+    }
+    
+    /**
+     * Send the edited fields of a hike that already exists in the cloud and mark it as synced
+     * Returns true if successful, false otherwise
+     */
+    private boolean patchOfflineHike(Hike hike) {
+        try {
+            JsonObject body = patchBody(buildHikeBody(hike), hike.dirtyFields, Collections.emptySet());
+            long cloudVersion = patchToCloud("/hikes/" + hike.cloudId, body, hike.cloudVersion, "hike",
+                "hike " + hike.name);
+            if (cloudVersion < 0) {
+                return false;
+            }
+            hike.cloudVersion = cloudVersion;
+            return markHikeSynced(hike);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to update hike " + hike.name + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Upload a batch of offline hikes with a single request.
+     * Falls back to one request per hike when the batch endpoint is unavailable.
+     */
+    private void uploadHikeBatch(List<Hike> batch, UploadGraph graph) {
+        // Hikes already in the cloud only send their edited fields
+        List<Hike> creates = new ArrayList<>(batch.size());
+        for (Hike hike : batch) {
+            if (hike.cloudId != null) {
+                graph.recordHike(hike, patchOfflineHike(hike));
+            } else {
+                creates.add(hike);
+            }
+        }
+        
+        batch = resumeCreatedHikes(creates, graph);
+        if (batch.size() > 1 && batchUploadsSupported) {
+            JsonArray items = new JsonArray();
+            for (Hike hike : batch) {
+                JsonObject body = buildHikeBody(hike);
+                body.addProperty("clientId", String.valueOf(hike.id));
+                body.addProperty("idempotencyKey", uploadLedger.begin(UploadLedgerEntry.TYPE_HIKE, hike.id).requestKey);
+                items.add(body);
+            }
+            
+            String[] cloudIds = postBatch("/hikes/batch", items);
+            if (cloudIds != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    Hike hike = batch.get(i);
+                    boolean success = false;
+                    if (cloudIds[i] != null) {
+                        try {
+                            hike.cloudId = cloudIds[i];
+                            uploadLedger.recordCreated(UploadLedgerEntry.TYPE_HIKE, hike.id, hike.cloudId);
+                            success = markHikeSynced(hike);
+                        } catch (Exception e) {
+                            Log.e(TAG, "Failed to update batched hike " + hike.name + ": " + e.getMessage(), e);
+                        }
+                    }
+                    graph.recordHike(hike, success);
+                }
+                return;
+            }
+        }
+        
+        for (Hike hike : batch) {
+            graph.recordHike(hike, uploadOfflineHike(hike));
+        }
+    }
+    
+    /**
+     * Delete a batch of locally deleted rows from the cloud and purge the confirmed ones locally
+     * Rows without a cloudId only existed locally and are purged without a request.
+     * The purge runs in one transaction once the server has answered.
+     * @param tombstones local ID -> cloud ID (null if never uploaded)
+     */
+    private void syncDeletionBatch(String entityType, Map<Long, String> tombstones, UploadTally tally) {
+        String path = SyncOutboxEntry.TYPE_HIKE.equals(entityType) ? "/hikes" : "/observations";
+        List<String> cloudIds = new ArrayList<>();
+        for (String cloudId : tombstones.values()) {
+            if (cloudId != null) {
+                cloudIds.add(cloudId);
+            }
+        }
+        Set<String> deleted = deleteAllFromCloud(path, cloudIds);
+        
+        List<Long> confirmed = new ArrayList<>();
+        for (Map.Entry<Long, String> tombstone : tombstones.entrySet()) {
+            if (tombstone.getValue() == null || deleted.contains(tombstone.getValue())) {
+                confirmed.add(tombstone.getKey());
+            }
+        }
+        boolean purged = false;
+        try {
+            if (!confirmed.isEmpty()) {
+                database.runInTransaction(() -> {
+                    if (SyncOutboxEntry.TYPE_HIKE.equals(entityType)) {
+                        hikeDao.permanentlyDeleteAll(confirmed);
+                    } else {
+                        observationDao.permanentlyDeleteAll(confirmed);
+                    }
+                    for (long localId : confirmed) {
+                        uploadLedger.complete(entityType, localId);
+                    }
+                });
+            }
+            purged = true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to purge deleted " + entityType + " rows: " + e.getMessage(), e);
+        }
+        
+        Set<Long> done = new HashSet<>(confirmed);
+        for (long localId : tombstones.keySet()) {
+            tally.record(entityType, localId, purged && done.contains(localId));
+        }
+    }
+    
+    /**
+     * Upload one offline observation and mark it as synced locally
+     * @param hikeCloudId cloud ID of the observation's parent hike
+     * @param preparedImage the observation's image being encoded in the background, or null
+     * Returns true if successful, false otherwise
+     */
+    private boolean uploadOfflineObservation(Observation observation, String hikeCloudId,
+                                             Future<ImagePreprocessor.PreparedImage> preparedImage) {
+        try {
+            return syncObservationToCloud(observation, buildObservationBody(observation, hikeCloudId, preparedImage))
+                && markObservationSynced(observation);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to upload observation " + observation.title + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Update sync status to 1 (synced) after the observation has received its cloud ID
+     * An edit made while the upload was in flight keeps the row pending (see markSyncedIfUnchanged)
+     */
+    private boolean markObservationSynced(Observation observation) {
+        observation.updatedAt = System.currentTimeMillis();
+        observationDao.markSyncedIfUnchanged(observation.id, observation.cloudId, observation.version,
+            observation.updatedAt, observation.cloudVersion);
+        observation.syncStatus = 1;
+        observation.dirtyFields = null;
+        uploadLedger.complete(UploadLedgerEntry.TYPE_OBSERVATION, observation.id);
+        return true;
+    }
+    
+    /**
+     * Send the edited fields of an observation that already exists in the cloud and mark it as synced
+     * The image is only uploaded again when it is one of the edited fields. A failed image
+     * upload fails the row, so it stays dirty and the edit is retried on the next sync.
+     * Returns true if successful, false otherwise
+     */
+    private boolean patchOfflineObservation(Observation observation, String hikeCloudId,
+                                            Future<ImagePreprocessor.PreparedImage> preparedImage) {
+        try {
+            Set<String> dirty = ChangeTracker.parse(observation.dirtyFields);
+            JsonObject body = dirty.isEmpty() || dirty.contains(ChangeTracker.FIELD_IMAGE_URL)
+                ? buildObservationBody(observation, hikeCloudId, preparedImage)
+                : buildObservationFields(observation, hikeCloudId);
+            body = patchBody(body, observation.dirtyFields, clearedObservationFields(observation));
+            long cloudVersion = patchToCloud("/observations/" + observation.cloudId, body,
+                observation.cloudVersion, "observation", "observation " + observation.title);
+            if (cloudVersion < 0) {
+                return false;
+            }
+            observation.cloudVersion = cloudVersion;
+            return markObservationSynced(observation);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to update observation " + observation.title + ": " + e.getMessage(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Whether syncing this observation has to upload its local image
+     * New observations always do; existing ones only when the image was edited (or the
+     * edited fields are unknown and the whole row is sent)
+     */
+    private boolean needsImageUpload(Observation observation) {
+        if (observation.imageUri == null || observation.imageUri.isEmpty()) {
+            return false;
+        }
+        Set<String> dirty = ChangeTracker.parse(observation.dirtyFields);
+        return observation.cloudId == null || dirty.isEmpty() || dirty.contains(ChangeTracker.FIELD_IMAGE_URL);
+    }
+    
+    /**
+     * Payload fields the observation no longer has a value for (they are left out of its body)
+     */
+    private static Set<String> clearedObservationFields(Observation observation) {
+        Set<String> cleared = new HashSet<>();
+        if (observation.latitude == null || observation.longitude == null) {
+            cleared.add("lat");
+            cleared.add("lng");
+        }
+        if ((observation.imageUri == null || observation.imageUri.isEmpty())
+                && (observation.cloudImageUrl == null || observation.cloudImageUrl.isEmpty())) {
+            cleared.add(ChangeTracker.FIELD_IMAGE_URL);
+        }
+        return cleared;
+    }
+    
+    /**
+     * Reduce a full payload to the edited fields
+     * Without recorded fields (e.g. rows from before dirty tracking) the whole payload is sent.
+     * Edited fields in clearedFields are sent as JSON null.
+     * @throws IllegalStateException if an edited field is missing from the payload for any
+     *         other reason (e.g. its image upload failed), or there is nothing to send
+     */
+    static JsonObject patchBody(JsonObject fullBody, String dirtyFields, Set<String> clearedFields) {
+        Set<String> dirty = ChangeTracker.parse(dirtyFields);
+        JsonObject patch = new JsonObject();
+        if (dirty.isEmpty()) {
+            patch = fullBody;
+        }
+        for (String field : dirty) {
+            if (fullBody.has(field)) {
+                patch.add(field, fullBody.get(field));
+            } else if (clearedFields.contains(field)) {
+                patch.add(field, JsonNull.INSTANCE);
+            } else {
+                throw new IllegalStateException("Edited field " + field + " missing from payload");
+            }
+        }
+        if (patch.size() == 0) {
+            throw new IllegalStateException("Nothing to send");
+        }
+        return patch;
+    }
+    
+    /**
+     * PATCH a partial payload to an existing cloud row
+     * The server only applies it while the row is still at baseVersion (when known) and answers
+     * 409 with its current row otherwise. The edited fields are then re-based on that row and
+     * sent once more, so they win over the concurrent change without touching other fields.
+     * @param baseVersion the cloud row version the edit was made against (0 = unknown, unguarded)
+     * @param rowKey the key of the current row in a 409 response
+     * @return the row version after the update (0 if not reported), or -1 if it failed
+     */
+    private long patchToCloud(String path, JsonObject body, long baseVersion, String rowKey, String label) {
+        for (int attempt = 0; ; attempt++) {
+            if (baseVersion > 0) {
+                body.addProperty("baseVersion", baseVersion);
+            }
+            Request request = new Request.Builder()
+                .url(BASE_URL + path)
+                .patch(RequestBody.create(body.toString(), MediaType.parse("application/json")))
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Authorization", "Bearer " + authToken)
+                .build();
+            
+            try (Response response = httpClient.newCall(request).execute()) {
+                assert response.body() != null;
+                String responseBody = response.body().string();
+                if (response.isSuccessful()) {
+                    body.remove("baseVersion");
+                    Log.d(TAG, "Updated " + label + " in cloud: " + body.keySet());
+                    return rowVersion(responseBody, null);
+                }
+                if (response.code() == 409 && attempt == 0) {
+                    long currentVersion = rowVersion(responseBody, rowKey);
+                    if (currentVersion > 0) {
+                        Log.w(TAG, label + " changed in cloud since version " + baseVersion
+                            + ", re-sending edits on version " + currentVersion);
+                        baseVersion = currentVersion;
+                        continue;
+                    }
+                }
+                Log.e(TAG, "Failed to update " + label + ": " + response.code() + " - " + responseBody);
+                return -1;
+            } catch (IOException e) {
+                Log.e(TAG, "Network error while updating " + label + ": " + e.getMessage(), e);
+                return -1;
+            }
+        }
+    }
+    
+    /**
+     * Read the row version from a response (the row itself, or the one under rowKey)
+     * @return the version, or 0 if the response does not carry one
+     */
+    private static long rowVersion(String responseBody, String rowKey) {
+        try {
+            JSONObject row = new JSONObject(responseBody);
+            if (rowKey != null) {
+                row = row.optJSONObject(rowKey);
+            }
+            return row != null ? row.optLong("rowversion", 0) : 0;
+        } catch (JSONException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Upload a batch of offline observations with a single request.
+     * Falls back to one request per observation when the batch endpoint is unavailable.
+     */
+    private void uploadObservationBatch(List<Observation> batch, UploadGraph graph, ExecutorService encodeExecutor) {
+        UploadTally tally = graph.tally;
+        
+        // Observations already in the cloud only send their edited fields
+        List<Observation> creates = new ArrayList<>(batch.size());
+        List<Observation> patches = new ArrayList<>();
+        for (Observation observation : batch) {
+            (observation.cloudId != null ? patches : creates).add(observation);
+        }
+        ImageEncodeQueue patchImages = new ImageEncodeQueue(patches, encodeExecutor);
+        for (int i = 0; i < patches.size(); i++) {
+            Observation observation = patches.get(i);
+            tally.record(SyncOutboxEntry.TYPE_OBSERVATION, observation.id,
+                patchOfflineObservation(observation, graph.parentCloudId(observation), patchImages.next(i)));
+        }
+        
+        batch = resumeCreatedObservations(creates, tally);
+        ImageEncodeQueue images = new ImageEncodeQueue(batch, encodeExecutor);
+        if (batch.size() > 1 && batchUploadsSupported) {
+            JsonArray items = new JsonArray();
+            for (int i = 0; i < batch.size(); i++) {
+                Observation observation = batch.get(i);
+                JsonObject body = buildObservationBody(observation, graph.parentCloudId(observation), images.next(i));
+                body.addProperty("clientId", String.valueOf(observation.id));
+                body.addProperty("idempotencyKey",
+                    uploadLedger.begin(UploadLedgerEntry.TYPE_OBSERVATION, observation.id).requestKey);
+                items.add(body);
+            }
+            
+            String[] cloudIds = postBatch("/observations/batch", items);
+            if (cloudIds == null) {
+                // Reuse the built payloads so attached images are not uploaded twice
+                for (int i = 0; i < batch.size(); i++) {
+                    Observation observation = batch.get(i);
+                    JsonObject body = items.get(i).getAsJsonObject();
+                    body.remove("clientId");
+                    body.remove("idempotencyKey");
+                    boolean success;
+                    try {
+                        success = syncObservationToCloud(observation, body) && markObservationSynced(observation);
+                    } catch (Exception e) {
+                        Log.e(TAG, "Failed to upload observation " + observation.title + ": " + e.getMessage(), e);
+                        success = false;
+                    }
+                    tally.record(SyncOutboxEntry.TYPE_OBSERVATION, observation.id, success);
+                }
+            } else {
+                for (int i = 0; i < batch.size(); i++) {
+                    Observation observation = batch.get(i);
+                    boolean success = false;
+                    if (cloudIds[i] != null) {
+                        try {
+                            observation.cloudId = cloudIds[i];
+                            uploadLedger.recordCreated(UploadLedgerEntry.TYPE_OBSERVATION, observation.id, observation.cloudId);
+                            success = markObservationSynced(observation);
+                        } catch (Exception e) {
+                            Log.e(TAG, "Failed to update batched observation " + observation.title + ": " + e.getMessage(), e);
+                        }
+                    }
+                    tally.record(SyncOutboxEntry.TYPE_OBSERVATION, observation.id, success);
+                }
+            }
+            return;
+        }
+        
+        for (int i = 0; i < batch.size(); i++) {
+            Observation observation = batch.get(i);
+            tally.record(SyncOutboxEntry.TYPE_OBSERVATION, observation.id,
+                uploadOfflineObservation(observation, graph.parentCloudId(observation), images.next(i)));
+        }
+    }
+    
+    /**
+     * Finish hikes whose cloud record was already created by an earlier, interrupted sync
+     * @return the hikes that still have to be posted
+     */
+    private List<Hike> resumeCreatedHikes(List<Hike> batch, UploadGraph graph) {
+        List<Hike> remaining = new ArrayList<>(batch.size());
+        for (Hike hike : batch) {
+            String cloudId = uploadLedger.begin(UploadLedgerEntry.TYPE_HIKE, hike.id).cloudId;
+            if (cloudId == null) {
+                remaining.add(hike);
+                continue;
+            }
+            Log.d(TAG, "Hike " + hike.name + " was already created as " + cloudId + ", skipping upload");
+            boolean success;
+            try {
+                hike.cloudId = cloudId;
+                success = markHikeSynced(hike);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to mark hike " + hike.name + " as synced: " + e.getMessage(), e);
+                success = false;
+            }
+            graph.recordHike(hike, success);
+        }
+        return remaining;
+    }
+    
+    /**
+     * Finish observations whose cloud record was already created by an earlier, interrupted sync
+     * @return the observations that still have to be posted
+     */
+    private List<Observation> resumeCreatedObservations(List<Observation> batch, UploadTally tally) {
+        List<Observation> remaining = new ArrayList<>(batch.size());
+        for (Observation observation : batch) {
+            String cloudId = uploadLedger.begin(UploadLedgerEntry.TYPE_OBSERVATION, observation.id).cloudId;
+            if (cloudId == null) {
+                remaining.add(observation);
+                continue;
+            }
+            Log.d(TAG, "Observation " + observation.title + " was already created as " + cloudId + ", skipping upload");
+            boolean success;
+            try {
+                observation.cloudId = cloudId;
+                success = markObservationSynced(observation);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to mark observation " + observation.title + " as synced: " + e.getMessage(), e);
+                success = false;
+            }
+            tally.record(SyncOutboxEntry.TYPE_OBSERVATION, observation.id, success);
+        }
+        return remaining;
+    }
+    
+    /**
+     * Content hash of a local image, cached for the lifetime of this service
+     */
+    private String imageContentHash(String imageUri) {
+        String hash = imageHashes.get(imageUri);
+        if (hash == null) {
+            hash = uploadLedger.hashImage(imageUri);
+            if (hash != null) {
+                imageHashes.put(imageUri, hash);
+            }
+        }
+        return hash;
+    }
+    
+    /**
+     * URL this observation's current image was already uploaded to, or null
+     */
+    private String uploadedImageUrl(Observation observation) {
+        return uploadLedger.getUploadedImageUrl(UploadLedgerEntry.TYPE_OBSERVATION, observation.id,
+            imageContentHash(observation.imageUri));
+    }
+    
+    /**
+     * Encodes a batch's images one step ahead of the uploads: while observation i's image
+     * is uploaded, observation i+1's is downscaled on the encode pool. Only two encoded
+     * images per batch are held in memory at a time.
+     */
+    private class ImageEncodeQueue {
+        private final List<Observation> observations;
+        private final ExecutorService encodeExecutor;
+        private final List<Future<ImagePreprocessor.PreparedImage>> futures;
+        
+        ImageEncodeQueue(List<Observation> observations, ExecutorService encodeExecutor) {
+            this.observations = observations;
+            this.encodeExecutor = encodeExecutor;
+            this.futures = new ArrayList<>(Collections.nCopies(observations.size(), null));
+            submit(0);
+        }
+        
+        /**
+         * Get observation index's encode (null if it has no local image) and start the next one
+         */
+        Future<ImagePreprocessor.PreparedImage> next(int index) {
+            submit(index + 1);
+            return futures.get(index);
+        }
+        
+        private void submit(int index) {
+            if (index >= observations.size() || futures.get(index) != null) {
+                return;
+            }
+            Observation observation = observations.get(index);
+            if (needsImageUpload(observation)) {
+                Uri imageUri = Uri.parse(observation.imageUri);
+                futures.set(index, encodeExecutor.submit(() ->
+                    // No need to encode an image an earlier attempt already uploaded
+                    uploadedImageUrl(observation) != null ? null : cloudinaryHelper.prepareImage(imageUri)));
+            }
+        }
+    }
+    
+    /**
+     * POST several rows to a batch endpoint and map the returned cloud IDs back to them.
+     * The response is a JSON array of created rows, matched back by BatchIdMapper.
+     * 
+     * @return cloud IDs in request order (null entries for rows that failed), or null if
+     *         the server does not support batch uploads and rows must be posted one by one
+     */
+    private String[] postBatch(String endpoint, JsonArray items) {
+        String[] cloudIds = new String[items.size()];
+        
+        Request request = new Request.Builder()
+            .url(BASE_URL + endpoint)
+            .post(RequestBody.create(items.toString(), MediaType.parse("application/json")))
+            .addHeader("Content-Type", "application/json")
+            .addHeader("Authorization", "Bearer " + authToken)
+            .build();
+        
+        try (Response response = httpClient.newCall(request).execute()) {
+            int code = response.code();
+            if (code == 404 || code == 405 || code == 501) {
+                Log.w(TAG, "Batch endpoint " + endpoint + " not supported (HTTP " + code + "), using single uploads");
+                batchUploadsSupported = false;
+                return null;
+            }
+            
+            assert response.body() != null;
+            String responseBody = response.body().string();
+            if (!response.isSuccessful()) {
+                Log.e(TAG, "Batch upload to " + endpoint + " failed: " + code + " - " + responseBody);
+                return cloudIds;
+            }
+            
+            JsonArray created = JsonParser.parseString(responseBody).getAsJsonArray();
+            cloudIds = BatchIdMapper.map(items, created);
+            
+            Log.d(TAG, "Batch upload to " + endpoint + " returned " + created.size() + "/" + items.size() + " rows");
+        } catch (IOException e) {
+            Log.e(TAG, "Network error during batch upload to " + endpoint + ": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to parse batch response from " + endpoint + ": " + e.getMessage(), e);
+        }
+        
+        return cloudIds;
+    }
+    
+    /**
+     * Thread-safe tally of upload outcomes shared by the upload workers.
+     * Counters and progress callbacks are updated under one lock so
+     * onSyncProgress always reports increasing counts. Each outcome is also
+     * written to the outbox, which schedules the retry of a failed row.
+     */
+    private static class UploadTally {
+        private final SyncResult result;
+        private final SyncCallback callback;
+        private final SyncOutbox outbox;
+        private final SyncRun run;
+        private int completedCount;
+        
+        UploadTally(SyncResult result, SyncCallback callback, SyncOutbox outbox, SyncRun run) {
+            this.result = result;
+            this.callback = callback;
+            this.outbox = outbox;
+            this.run = run;
+        }
+        
+        void record(String entityType, long localId, boolean success) {
+            try {
+                if (success) {
+                    outbox.recordSuccess(entityType, localId);
+                } else if (!run.isCancelled()) {
+                    // A row cut off by cancellation did not fail, so it is not backed off
+                    outbox.recordFailure(entityType, localId);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to update sync outbox for " + entityType + " " + localId + ": " + e.getMessage(), e);
             }
-        }).start();
+            count(success);
+        }
+        
+        /**
+         * Count a row that could not be attempted in this run (left pending, no backoff)
+         */
+        synchronized void skip() {
+            result.skippedHikes++;
+            progress();
+        }
+        
+        private synchronized void count(boolean success) {
+            if (success) {
+                result.successfulUploads++;
+            } else {
+                result.failedUploads++;
+            }
+            progress();
+        }
+        
+        private void progress() {
+            completedCount++;
+            if (callback != null) {
+                callback.onSyncProgress(completedCount, result.totalHikes);
+            }
+        }
     }
     
     /**
@@ -248,16 +1219,7 @@ public class SyncService {
             String url = BASE_URL + "/hikes";
             
             // Build request body from hike object
-            JsonObject body = new JsonObject();
-            body.addProperty("userId", authService.getUserId());
-            body.addProperty("name", hike.name);
-            body.addProperty("location", hike.location);
-            body.addProperty("length", hike.length);
-            body.addProperty("difficulty", hike.difficulty);
-            body.addProperty("description", hike.description != null ? hike.description : "");
-            body.addProperty("privacy", hike.privacy);
-            body.addProperty("lat", hike.latitude);
-            body.addProperty("lng", hike.longitude);
+            JsonObject body = buildHikeBody(hike);
             
             RequestBody requestBody = RequestBody.create(
                 body.toString(),
@@ -269,6 +1231,7 @@ public class SyncService {
                 .post(requestBody)
                 .addHeader("Content-Type", "application/json")
                 .addHeader("Authorization", "Bearer " + authToken)
+                .addHeader("Idempotency-Key", uploadLedger.begin(UploadLedgerEntry.TYPE_HIKE, hike.id).requestKey)
                 .build();
             
             // Make synchronous call
@@ -277,13 +1240,21 @@ public class SyncService {
                     try {
                         assert response.body() != null;
                         JSONObject responseJson = new JSONObject(response.body().string());
-                        String cloudId = responseJson.optString("id");
+                        String cloudId = emptyToNull(responseJson.optString("id"));
+                        if (cloudId == null) {
+                            // Created but unidentified; the retry sends the same Idempotency-Key and gets the row back
+                            Log.e(TAG, "Hike " + hike.name + " created without a cloud ID in the response");
+                            return false;
+                        }
                         
                         // Store cloud ID for future updates
                         hike.cloudId = cloudId;
+                        hike.cloudVersion = responseJson.optLong("rowversion", 0);
+                        uploadLedger.recordCreated(UploadLedgerEntry.TYPE_HIKE, hike.id, cloudId);
                         Log.d(TAG, "Successfully synced hike: " + hike.name + " with cloud ID: " + cloudId);
                         return true;
                     } catch (JSONException e) {
+                        // The ledger keeps the request key, so the retry is answered with the same hike
                         Log.e(TAG, "Failed to parse response: " + e.getMessage());
                         return false;
                     }
@@ -300,6 +1271,23 @@ public class SyncService {
         }
     }
     
+    /**
+     * Build the JSON payload for creating a hike in the cloud
+     */
+    private JsonObject buildHikeBody(Hike hike) {
+        JsonObject body = new JsonObject();
+        body.addProperty("userId", authService.getUserId());
+        body.addProperty("name", hike.name);
+        body.addProperty("location", hike.location);
+        body.addProperty("length", hike.length);
+        body.addProperty("difficulty", hike.difficulty);
+        body.addProperty("description", hike.description != null ? hike.description : "");
+        body.addProperty("privacy", hike.privacy);
+        body.addProperty("lat", hike.latitude);
+        body.addProperty("lng", hike.longitude);
+        return body;
+    }
+    
     /**
      * Sync hikes asynchronously (one at a time)
      * This is an alternative approach using callbacks for each hike
@@ -309,16 +1297,7 @@ public class SyncService {
             try {
                 String url = BASE_URL + "/hikes";
                 
-                JsonObject body = new JsonObject();
-                body.addProperty("userId", authService.getUserId());
-                body.addProperty("name", hike.name);
-                body.addProperty("location", hike.location);
-                body.addProperty("length", hike.length);
-                body.addProperty("difficulty", hike.difficulty);
-                body.addProperty("description", hike.description != null ? hike.description : "");
-                body.addProperty("privacy", hike.privacy);
-                body.addProperty("lat", hike.latitude);
-                body.addProperty("lng", hike.longitude);
+                JsonObject body = buildHikeBody(hike);
                 
                 RequestBody requestBody = RequestBody.create(
                     body.toString(),
@@ -330,6 +1309,7 @@ public class SyncService {
                     .post(requestBody)
                     .addHeader("Content-Type", "application/json")
                     .addHeader("Authorization", "Bearer " + authToken)
+                    .addHeader("Idempotency-Key", uploadLedger.begin(UploadLedgerEntry.TYPE_HIKE, hike.id).requestKey)
                     .build();
                 
                 httpClient.newCall(request).enqueue(new Callback() {
@@ -346,13 +1326,20 @@ public class SyncService {
                         if (response.isSuccessful()) {
                             try {
                                 JSONObject responseJson = new JSONObject(response.body().string());
-                                String cloudId = responseJson.optString("id");
+                                String cloudId = emptyToNull(responseJson.optString("id"));
+                                if (cloudId == null) {
+                                    Log.e(TAG, "Hike " + hike.name + " created without a cloud ID in the response");
+                                    if (callback != null) {
+                                        callback.onSyncError("Sync failed: no cloud ID in response");
+                                    }
+                                    return;
+                                }
                                 
                                 // Update hike sync status
-                                hike.syncStatus = 1;
                                 hike.cloudId = cloudId;
-                                hike.updatedAt = System.currentTimeMillis();
-                                hikeDao.update(hike);
+                                hike.cloudVersion = responseJson.optLong("rowversion", 0);
+                                uploadLedger.recordCreated(UploadLedgerEntry.TYPE_HIKE, hike.id, cloudId);
+                                markHikeSynced(hike);
                                 
                                 Log.d(TAG, "Successfully synced hike: " + hike.name);
                                 
@@ -483,155 +1470,380 @@ public class SyncService {
     
     /**
      * Sync hikes from cloud to offline (download)
-     * Fetches hikes from cloud backend and stores them locally
-     * Avoids duplicates by checking cloudId
+     * Fetches hikes changed since the last download (per-account updatedAt watermark)
+     * and applies them locally as upserts keyed by cloudId
+     * The server returns them oldest change first, one page per request; each request continues
+     * after the (updatedAt, cloudId) of the previous page's last row until a short page
+     * Rows are decoded from the response stream and written a page at a time, one transaction per page
+     * Observations for a page are fetched concurrently (see setDownloadConcurrency)
+     * After each fully applied page the (updatedAt, cloudId) of its last row is checkpointed; a rerun
+     * of the same download (same watermark) requests the rows after it instead of starting over
+     * 
+     * @return a handle to cancel the run
      */
-    public void syncCloudToOffline(CloudSyncCallback callback) {
-        new Thread(() -> {
+    public SyncRun syncCloudToOffline(CloudSyncCallback callback) {
+        SyncRun run = new SyncRun();
+        run.start(() -> {
+            ExecutorService fetchExecutor = Executors.newFixedThreadPool(downloadConcurrency);
+            run.attach(fetchExecutor);
+            syncStateStore.setDownloadRunning(true);
             try {
                 long startTime = System.currentTimeMillis();
                 CloudSyncResult result = new CloudSyncResult();
+                AdaptiveConcurrencyLimiter.Metrics startMetrics = backendLimiter.snapshot();
                 
-                Log.d(TAG, "=== Cloud-to-Offline Sync Started ===");
-                Log.d(TAG, "Calling fetchHikesFromCloud()...");
+                long userId = authService.getUserId();
+                long since = syncStateStore.getHikeWatermark(userId);
                 
-                // Fetch all hikes from cloud (both public and private)
-                List<Hike> cloudHikes = fetchHikesFromCloud();
+                Log.d(TAG, "=== Cloud-to-Offline Sync Started ===");
+                Log.d(TAG, "Streaming hikes from cloud changed since " + since + "...");
                 
-                Log.d(TAG, "fetchHikesFromCloud() returned: " + (cloudHikes == null ? "null" : cloudHikes.size() + " hikes"));
+                if (callback != null) {
+                    Handler handler = new Handler(Looper.getMainLooper());
+                    handler.post(() -> callback.onCloudSyncStart());
+                }
                 
-                if (cloudHikes == null || cloudHikes.isEmpty()) {
-                    Log.w(TAG, "No hikes received from cloud or fetch failed");
-                    result.totalDownloaded = 0;
-                    result.successfulInserts = 0;
-                    result.failedInserts = 0;
-                    result.skippedDuplicates = 0;
-                    result.syncDuration = System.currentTimeMillis() - startTime;
-                    
+                // Fetch hikes (both public and private) changed since the watermark
+                AtomicInteger completedCount = new AtomicInteger();
+                Runnable onHikeApplied = () -> {
+                    int completed = completedCount.incrementAndGet();
                     if (callback != null) {
                         Handler handler = new Handler(Looper.getMainLooper());
-                        handler.post(() -> callback.onCloudSyncSuccess(result));
+                        int total = Math.max(result.totalDownloaded, completed);
+                        handler.post(() -> callback.onCloudSyncProgress(completed, total));
                     }
-                    return;
-                }
-                
-                result.totalDownloaded = cloudHikes.size();
-                Log.d(TAG, "Starting processing of " + result.totalDownloaded + " cloud hikes");
+                };
                 
-                if (callback != null) {
-                    Handler handler = new Handler(Looper.getMainLooper());
-                    handler.post(() -> callback.onCloudSyncStart());
+                // Rows an interrupted run of this same download already applied are not requested again
+                DownloadCheckpoint checkpoint = new DownloadCheckpoint(userId, since);
+                long cursorUpdatedAt = checkpoint.updatedAt;
+                long cursorId = checkpoint.cloudId;
+                if (cursorId > 0) {
+                    Log.d(TAG, "Resuming download after hike " + cursorId + " (updatedAt " + cursorUpdatedAt + ")");
                 }
                 
-                // Process each hike from cloud
-                int completedCount = 0;
-                for (Hike cloudHike : cloudHikes) {
-                    Log.d(TAG, "Processing hike: " + cloudHike.name + " (cloudId: " + cloudHike.cloudId + ")");
-                    
-                    // Check if this hike already exists locally (by cloudId)
-                    if (cloudHike.cloudId != null) {
-                        Hike existingHike = hikeDao.getHikeByCloudIdSync(cloudHike.cloudId);
-                        if (existingHike != null) {
-                            Log.d(TAG, "Hike already exists locally, skipping duplicate");
-                            result.skippedDuplicates++;
-                            completedCount++;
-                            if (callback != null) {
-                                Handler handler = new Handler(Looper.getMainLooper());
-                                int finalCompletedCount = completedCount;
-                                handler.post(() -> callback.onCloudSyncProgress(finalCompletedCount, result.totalDownloaded));
-                            }
-                            continue;
-                        }
+                // Each server page is deduplicated with one indexed query and written in one transaction
+                List<Hike> page = new ArrayList<>(DOWNLOAD_PAGE_SIZE);
+                boolean fetched;
+                while (true) {
+                    page.clear();
+                    int received = streamHikesFromCloud(cursorUpdatedAt, cursorId, DOWNLOAD_PAGE_SIZE, result,
+                        cloudHike -> {
+                            run.throwIfCancelled();
+                            page.add(cloudHike);
+                        });
+                    run.throwIfCancelled();
+                    fetched = received >= 0;
+                    if (!page.isEmpty()) {
+                        applyCheckpointedPage(page, result, onHikeApplied, fetchExecutor, checkpoint);
                     }
-                    
-                    // Insert new hike from cloud
-                    try {
-                        // Ensure local ID is 0 to let Room auto-generate
-                        cloudHike.id = 0;
-                        cloudHike.syncStatus = 1; // Mark as synced
-                        long insertedHikeId = hikeDao.insert(cloudHike);
-                        Log.d(TAG, "Successfully inserted hike: " + cloudHike.name + " with local ID: " + insertedHikeId);
-                        result.successfulInserts++;
-                        
-                        // After inserting hike, fetch and sync its observations
-                        List<Observation> cloudObservations = fetchObservationsFromCloud(cloudHike.cloudId);
-                        if (cloudObservations != null && !cloudObservations.isEmpty()) {
-                            Log.d(TAG, "Fetched " + cloudObservations.size() + " observations for hike: " + cloudHike.name);
-                            
-                            for (Observation cloudObs : cloudObservations) {
-                                try {
-                                    // Check if observation already exists locally (by cloudId)
-                                    if (cloudObs.cloudId != null) {
-                                        Observation existingObs = observationDao.getObservationByCloudIdSync(cloudObs.cloudId);
-                                        if (existingObs != null) {
-                                            Log.d(TAG, "Observation already exists locally, skipping duplicate");
-                                            result.skippedDuplicates++;
-                                            continue;
-                                        }
-                                    }
-                                    
-                                    // Download image from cloud if present
-                                    if (cloudObs.imageUri != null && !cloudObs.imageUri.isEmpty()) {
-                                        String localImagePath = downloadImageFromCloudinary(cloudObs.imageUri);
-                                        if (localImagePath != null) {
-                                            cloudObs.imageUri = localImagePath;
-                                            Log.d(TAG, "Downloaded image for observation: " + cloudObs.title);
-                                        } else {
-                                            Log.w(TAG, "Failed to download image for observation: " + cloudObs.title);
-                                            // Continue anyway - observation can exist without image
-                                            cloudObs.imageUri = null;
-                                        }
-                                    }
-                                    
-                                    // Set the local hike ID and reset observation ID
-                                    cloudObs.id = 0;
-                                    cloudObs.hikeId = insertedHikeId;
-                                    cloudObs.syncStatus = 1; // Mark as synced
-                                    observationDao.insert(cloudObs);
-                                    Log.d(TAG, "Successfully inserted observation: " + cloudObs.title + " for hike ID: " + insertedHikeId);
-                                    result.successfulInserts++;
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Failed to insert observation from cloud: " + e.getMessage(), e);
-                                    result.failedInserts++;
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Failed to insert hike from cloud: " + e.getMessage(), e);
-                        result.failedInserts++;
+                    run.throwIfCancelled();
+                    if (!fetched || received < DOWNLOAD_PAGE_SIZE) {
+                        break;
                     }
                     
-                    completedCount++;
-                    if (callback != null) {
-                        Handler handler = new Handler(Looper.getMainLooper());
-                        int finalCompletedCount = completedCount;
-                        handler.post(() -> callback.onCloudSyncProgress(finalCompletedCount, result.totalDownloaded));
+                    // The next page starts after the last row of this one
+                    Hike lastRow = page.get(page.size() - 1);
+                    cursorUpdatedAt = lastRow.updatedAt;
+                    cursorId = parseCloudId(lastRow.cloudId);
+                    if (cursorId <= 0) {
+                        Log.e(TAG, "Cannot page past hike without a numeric cloud ID: " + lastRow.cloudId);
+                        fetched = false;
+                        break;
+                    }
+                }
+                
+                result.totalDownloaded = completedCount.get();
+                Log.d(TAG, "Processed " + result.totalDownloaded + " cloud hikes" + (fetched ? "" : " before the download failed"));
+                
+                // Only advance the watermark when every page was read and every row applied, otherwise
+                // failed or unread rows would never be re-fetched. Rows come in updatedAt order, so
+                // the checkpoint then holds the newest applied change.
+                if (fetched && result.failedInserts == 0) {
+                    if (checkpoint.updatedAt > since) {
+                        syncStateStore.setHikeWatermark(userId, checkpoint.updatedAt);
                     }
+                    syncStateStore.clearDownloadCheckpoint(userId);
                 }
                 
                 result.syncDuration = System.currentTimeMillis() - startTime;
+                AdaptiveConcurrencyLimiter.Metrics metrics = backendLimiter.snapshot().since(startMetrics);
+                result.concurrencyLimit = metrics.limit;
+                result.throttledResponses = metrics.throttled;
+                result.averageLatencyMs = metrics.averageLatencyMs();
                 
                 if (callback != null) {
                     Handler handler = new Handler(Looper.getMainLooper());
                     handler.post(() -> callback.onCloudSyncSuccess(result));
                 }
             } catch (Exception e) {
-                Log.e(TAG, "Cloud-to-offline sync error: " + e.getMessage(), e);
+                String message;
+                if (run.isCancelled()) {
+                    Log.d(TAG, "Cloud-to-offline sync cancelled");
+                    message = "Sync cancelled";
+                } else {
+                    Log.e(TAG, "Cloud-to-offline sync error: " + e.getMessage(), e);
+                    message = "Sync failed: " + e.getMessage();
+                }
                 if (callback != null) {
                     Handler handler = new Handler(Looper.getMainLooper());
-                    handler.post(() -> callback.onCloudSyncError("Sync failed: " + e.getMessage()));
+                    handler.post(() -> callback.onCloudSyncError(message));
                 }
+            } finally {
+                fetchExecutor.shutdownNow();
+                syncStateStore.setDownloadRunning(false);
             }
-        }).start();
+        });
+        return run;
+    }
+    
+    /**
+     * Download progress for one watermark: the (updatedAt, cloudId) up to which rows are applied
+     * The checkpoint only covers an unbroken prefix of cleanly applied pages. Rows are keyed
+     * by their position in the server's (updatedAt, id) order, so rows changed in the cloud
+     * since the interrupted run move past the checkpoint and are still downloaded.
+     */
+    private class DownloadCheckpoint {
+        final long userId;
+        final long since;
+        long updatedAt;
+        long cloudId;
+        private boolean prefixClean = true;
+        
+        DownloadCheckpoint(long userId, long since) {
+            this.userId = userId;
+            this.since = since;
+            SyncStateStore.DownloadCursor saved = syncStateStore.getDownloadCheckpoint(userId, since);
+            this.updatedAt = saved != null ? saved.updatedAt : since;
+            this.cloudId = saved != null ? saved.cloudId : 0;
+        }
+        
+        /**
+         * Advance the checkpoint to a page's last row, unless it (or an earlier page) had failures
+         */
+        void pageApplied(Hike lastRow, boolean clean) {
+            long lastCloudId = parseCloudId(lastRow.cloudId);
+            if (!prefixClean || !clean || lastCloudId <= 0) {
+                prefixClean = false;
+                return;
+            }
+            updatedAt = lastRow.updatedAt;
+            cloudId = lastCloudId;
+            syncStateStore.setDownloadCheckpoint(userId, since, new SyncStateStore.DownloadCursor(updatedAt, cloudId));
+        }
+    }
+    
+    /**
+     * Apply a page of downloaded hikes and move the checkpoint past it if it applied cleanly
+     */
+    private void applyCheckpointedPage(List<Hike> page, CloudSyncResult result, Runnable onHikeApplied,
+                                       ExecutorService fetchExecutor, DownloadCheckpoint checkpoint) {
+        int failuresBefore = result.failedInserts;
+        applyCloudHikePage(page, result, onHikeApplied, fetchExecutor);
+        checkpoint.pageApplied(page.get(page.size() - 1), result.failedInserts == failuresBefore);
+    }
+    
+    /**
+     * Apply a page of downloaded hikes, resolving which of them already exist locally
+     * with a single cloudId lookup for the whole page
+     * Observations of the page's hikes are fetched concurrently on fetchExecutor (bounded by
+     * setDownloadConcurrency) and collected as they complete; the page is then written in one transaction
+     */
+    private void applyCloudHikePage(List<Hike> page, CloudSyncResult result, Runnable onHikeApplied,
+                                    ExecutorService fetchExecutor) {
+        Map<String, Hike> localByCloudId = new HashMap<>();
+        for (List<String> chunk : partition(collectCloudIds(page, hike -> hike.cloudId), MAX_QUERY_VARIABLES)) {
+            for (Hike local : hikeDao.getHikesByCloudIdsSync(chunk)) {
+                localByCloudId.put(local.cloudId, local);
+            }
+        }
+        
+        List<PendingHike> pending = new ArrayList<>();
+        Map<String, PendingHike> pendingByCloudId = new HashMap<>();
+        for (Hike cloudHike : page) {
+            Log.d(TAG, "Processing hike: " + cloudHike.name + " (cloudId: " + cloudHike.cloudId + ")");
+            
+            PendingHike repeated = cloudHike.cloudId != null ? pendingByCloudId.get(cloudHike.cloudId) : null;
+            if (repeated != null) {
+                // Same cloud row twice in one page: the batch insert would violate the unique index
+                result.skippedDuplicates++;
+                continue;
+            }
+            
+            Hike existingHike = cloudHike.cloudId != null ? localByCloudId.get(cloudHike.cloudId) : null;
+            if (existingHike != null && isLocalCopyCurrent(existingHike, cloudHike)) {
+                Log.d(TAG, "Hike already up to date locally, skipping duplicate");
+                result.skippedDuplicates++;
+                continue;
+            }
+            
+            // New rows get local ID 0 so Room auto-generates; changed rows overwrite the local row in place
+            cloudHike.id = existingHike != null ? existingHike.id : 0;
+            cloudHike.syncStatus = 1; // Mark as synced
+            // Bump the version so an upload still in flight does not mark a newer edit as synced
+            cloudHike.version = existingHike != null ? existingHike.version + 1 : 0;
+            cloudHike.dirtyFields = null;
+            PendingHike entry = new PendingHike(cloudHike, existingHike == null);
+            pending.add(entry);
+            if (cloudHike.cloudId != null) {
+                pendingByCloudId.put(cloudHike.cloudId, entry);
+            }
+        }
+        
+        // Each task counts into its own result so the shared one is only touched on this thread
+        CompletionService<CloudSyncResult> fetches = new ExecutorCompletionService<>(fetchExecutor);
+        for (PendingHike entry : pending) {
+            fetches.submit(() -> {
+                CloudSyncResult taskResult = new CloudSyncResult();
+                prepareCloudObservations(entry, taskResult);
+                return taskResult;
+            });
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                CloudSyncResult taskResult = fetches.take().get();
+                result.skippedDuplicates += taskResult.skippedDuplicates;
+                result.failedInserts += taskResult.failedInserts;
+            } catch (ExecutionException e) {
+                // Unexpected error; the hike is still written but the watermark must not advance
+                Log.e(TAG, "Observation fetch task failed: " + e.getCause(), e.getCause());
+                result.failedInserts++;
+            } catch (InterruptedException e) {
+                // Don't write a half-prepared page; it is fetched again on the next run
+                Thread.currentThread().interrupt();
+                result.failedInserts += pending.size();
+                return;
+            }
+        }
+        
+        writeCloudHikePage(pending, result);
+        for (int i = 0; i < page.size(); i++) {
+            onHikeApplied.run();
+        }
+    }
+    
+    /**
+     * Write a prepared page of hikes and observations in a single transaction (see CloudPageWriter)
+     * A failed page is rolled back as a whole and all of its rows are counted as failed
+     */
+    private void writeCloudHikePage(List<PendingHike> pending, CloudSyncResult result) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            CloudPageWriter.PageCounts written = pageWriter.write(pending);
+            result.successfulInserts += written.hikesInserted + written.observationsInserted;
+            result.updatedRows += written.hikesUpdated + written.observationsUpdated;
+            Log.d(TAG, "Committed page: " + written.hikesInserted + " new hikes, " + written.hikesUpdated +
+                       " updated hikes, " + (written.observationsInserted + written.observationsUpdated) +
+                       " observations");
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to write page of " + pending.size() + " hikes from cloud: " + e.getMessage(), e);
+            result.failedInserts += CloudPageWriter.rowCount(pending);
+        }
+    }
+    
+    /**
+     * Collect the distinct non-null cloud IDs of a page of downloaded rows
+     */
+    private static <T> List<String> collectCloudIds(List<T> rows, java.util.function.Function<T, String> cloudIdOf) {
+        Set<String> cloudIds = new LinkedHashSet<>();
+        for (T row : rows) {
+            String cloudId = cloudIdOf.apply(row);
+            if (cloudId != null) {
+                cloudIds.add(cloudId);
+            }
+        }
+        return new ArrayList<>(cloudIds);
+    }
+    
+    /**
+     * Check whether a local row should win over the downloaded cloud copy:
+     * it has unsynced local changes, is pending deletion, or is at least as recent
+     */
+    private boolean isLocalCopyCurrent(Hike local, Hike cloud) {
+        return local.syncStatus == 0 || local.isDeleted || local.updatedAt >= cloud.updatedAt;
+    }
+    
+    /**
+     * Fetch the observations of a downloaded hike and queue the ones that need writing
+     */
+    private void prepareCloudObservations(PendingHike entry, CloudSyncResult result) {
+        List<Observation> cloudObservations = new ArrayList<>();
+        int fetched = streamObservationsFromCloud(entry.hike.cloudId, cloudObservations::add);
+        
+        // Resolve which observations already exist locally with one lookup per hike
+        Map<String, Observation> localByCloudId = new HashMap<>();
+        for (List<String> chunk : partition(collectCloudIds(cloudObservations, obs -> obs.cloudId), MAX_QUERY_VARIABLES)) {
+            for (Observation local : observationDao.getObservationsByCloudIdsSync(chunk)) {
+                localByCloudId.put(local.cloudId, local);
+            }
+        }
+        Set<String> queued = new HashSet<>();
+        for (Observation cloudObs : cloudObservations) {
+            if (cloudObs.cloudId != null && !queued.add(cloudObs.cloudId)) {
+                result.skippedDuplicates++;
+                continue;
+            }
+            Observation existingObs = cloudObs.cloudId != null ? localByCloudId.get(cloudObs.cloudId) : null;
+            if (prepareCloudObservation(cloudObs, existingObs, result)) {
+                entry.observations.add(cloudObs);
+            }
+        }
+        
+        if (fetched < 0) {
+            // Keeps the watermark in place so this hike's observations are requested again
+            result.failedInserts++;
+        } else if (fetched > 0) {
+            Log.d(TAG, "Fetched " + fetched + " observations for hike: " + entry.hike.name);
+        }
+    }
+    
+    /**
+     * Prepare one downloaded observation for writing (local image, sync status, target row)
+     * @param existingObs the local row with the same cloudId, or null if there is none
+     * @return false if the local copy is current and nothing needs to be written
+     */
+    private boolean prepareCloudObservation(Observation cloudObs, Observation existingObs, CloudSyncResult result) {
+        if (existingObs != null && (existingObs.syncStatus == 0 || existingObs.isDeleted
+                || existingObs.updatedAt >= cloudObs.updatedAt)) {
+            Log.d(TAG, "Observation already up to date locally, skipping duplicate");
+            result.skippedDuplicates++;
+            return false;
+        }
+        
+        // Only the remote reference is stored; the image is fetched on demand by ObservationImageCache
+        if (cloudObs.cloudImageUrl == null && cloudObs.imageUri != null && !cloudObs.imageUri.isEmpty()) {
+            cloudObs.cloudImageUrl = cloudObs.imageUri;
+        }
+        if (existingObs != null && existingObs.imageUri != null && cloudObs.cloudImageUrl != null
+                && cloudObs.cloudImageUrl.equals(existingObs.cloudImageUrl)) {
+            // Same remote image as before, keep the local copy
+            cloudObs.imageUri = existingObs.imageUri;
+        } else {
+            cloudObs.imageUri = null;
+        }
+        
+        // Mark as synced; the local hike ID is filled in when the page is written
+        cloudObs.syncStatus = 1;
+        cloudObs.version = existingObs != null ? existingObs.version + 1 : 0;
+        cloudObs.dirtyFields = null;
+        cloudObs.id = existingObs != null ? existingObs.id : 0;
+        return true;
     }
     
     /**
-     * Fetch all hikes from cloud backend (authenticated user's hikes)
-     * Returns list of hikes or null on error
+     * Stream one page of hikes from cloud backend (authenticated user's hikes)
+     * Only rows after the cursor are requested, in (updatedAt, id) order: rows changed after
+     * updatedSince, or changed at that same millisecond with a cloud ID above afterId
+     * Each hike is handed to the sink as soon as it is decoded from the response
+     * Returns the number of hikes in the page, or -1 on error
      */
-    private List<Hike> fetchHikesFromCloud() {
+    private int streamHikesFromCloud(long updatedSince, long afterId, int limit, CloudSyncResult result,
+                                     CloudPayloadDecoder.RowSink<Hike> sink) {
         try {
-            String url = BASE_URL + "/hikes/my";
+            String url = BASE_URL + "/hikes/my?updatedSince=" + updatedSince + "&afterId=" + afterId
+                + "&limit=" + limit;
             Log.d(TAG, "=== Cloud Download Debug ===");
             Log.d(TAG, "Fetching hikes from: " + url);
             Log.d(TAG, "Auth token: " + (authToken != null ? "Present" : "Missing"));
@@ -646,71 +1858,86 @@ public class SyncService {
             
             try (Response response = httpClient.newCall(request).execute()) {
                 Log.d(TAG, "Response received. Status code: " + response.code());
-                Log.d(TAG, "Response successful: " + response.isSuccessful());
                 
                 if (response.isSuccessful()) {
-                    try {
-                        assert response.body() != null;
-                        String responseBody = response.body().string();
-                        
-                        Log.d(TAG, "Response body length: " + responseBody.length());
-                        Log.d(TAG, "Response body (first 500 chars): " + 
-                              (responseBody.length() > 500 ? responseBody.substring(0, 500) : responseBody));
-                        
-                        // Parse JSON array of hikes
-                        JsonArray hikesArray = new com.google.gson.JsonParser()
-                            .parse(responseBody)
-                            .getAsJsonArray();
-                        
-                        Log.d(TAG, "Parsed JSON array with " + hikesArray.size() + " elements");
-                        
-                        List<Hike> hikes = new java.util.ArrayList<>();
-                        com.google.gson.Gson gson = new com.google.gson.Gson();
-                        
-                        for (int i = 0; i < hikesArray.size(); i++) {
-                            try {
-                                JsonObject element = hikesArray.get(i).getAsJsonObject();
-                                Hike hike = gson.fromJson(element, Hike.class);
-                                
-                                // Map cloud's 'id' field to our 'cloudId' for tracking
-                                if (element.has("id")) {
-                                    hike.cloudId = element.get("id").getAsString();
-                                    // Don't use cloud's id as local primary key - let Room generate it
-                                    hike.id = 0;
-                                    Log.d(TAG, "Parsed hike " + (i + 1) + ": " + hike.name + " (cloudId: " + hike.cloudId + ")");
-                                }
-                                hikes.add(hike);
-                            } catch (Exception e) {
-                                Log.w(TAG, "Failed to parse hike " + (i + 1) + ": " + e.getMessage(), e);
-                            }
+                    assert response.body() != null;
+                    
+                    // Optional row count so progress can be reported before the stream ends
+                    String totalHeader = afterId == 0 ? response.header("X-Total-Count") : null;
+                    if (totalHeader != null) {
+                        try {
+                            result.totalDownloaded = Integer.parseInt(totalHeader);
+                        } catch (NumberFormatException e) {
+                            Log.w(TAG, "Ignoring invalid X-Total-Count header: " + totalHeader);
                         }
-                        
-                        Log.d(TAG, "Successfully fetched " + hikes.size() + " hikes from cloud");
-                        return hikes;
-                    } catch (Exception e) {
-                        Log.e(TAG, "Failed to parse response: " + e.getMessage(), e);
-                        return null;
                     }
+                    
+                    int decoded = payloadDecoder.decodeHikes(response.body().charStream(), sink);
+                    Log.d(TAG, "Successfully streamed " + decoded + " hikes from cloud");
+                    return decoded;
                 } else {
                     assert response.body() != null;
                     String errorBody = response.body().string();
                     Log.e(TAG, "Failed to fetch hikes from cloud: " + response.code() + " - " + errorBody);
-                    return null;
+                    return -1;
                 }
             }
         } catch (IOException e) {
             Log.e(TAG, "Network error while fetching hikes from cloud: " + e.getMessage(), e);
-            return null;
+            return -1;
+        }
+    }
+    
+    /**
+     * Parse a cloud ID for use as a paging cursor
+     * @return the ID, or -1 if it is missing or not numeric
+     */
+    private static long parseCloudId(String cloudId) {
+        try {
+            return cloudId != null ? Long.parseLong(cloudId) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Stream all observations for a specific hike from cloud backend
+     * They are requested a page at a time in cloud ID order until a short page
+     * Returns the number of observations handed to the sink, or -1 on error
+     */
+    private int streamObservationsFromCloud(String hikeCloudId, CloudPayloadDecoder.RowSink<Observation> sink) {
+        int total = 0;
+        long afterId = 0;
+        while (true) {
+            String[] lastCloudId = new String[1];
+            int received = streamObservationPage(hikeCloudId, afterId, observation -> {
+                lastCloudId[0] = observation.cloudId;
+                sink.onRow(observation);
+            });
+            if (received < 0) {
+                return -1;
+            }
+            total += received;
+            if (received < DOWNLOAD_PAGE_SIZE) {
+                return total;
+            }
+            afterId = parseCloudId(lastCloudId[0]);
+            if (afterId <= 0) {
+                Log.e(TAG, "Cannot page past observation without a numeric cloud ID: " + lastCloudId[0]);
+                return -1;
+            }
         }
     }
     
     /**
-     * Fetch all observations for a specific hike from cloud backend
-     * Returns list of observations or null on error
+     * Stream one page of a hike's observations, those with a cloud ID above afterId
+     * Returns the number of observations handed to the sink, or -1 on error
      */
-    private List<Observation> fetchObservationsFromCloud(String hikeCloudId) {
+    private int streamObservationPage(String hikeCloudId, long afterId,
+                                      CloudPayloadDecoder.RowSink<Observation> sink) {
         try {
-            String url = BASE_URL + "/observations/hike/" + hikeCloudId;
+            String url = BASE_URL + "/observations/hike/" + hikeCloudId + "?afterId=" + afterId
+                + "&limit=" + DOWNLOAD_PAGE_SIZE;
             Log.d(TAG, "Fetching observations from: " + url);
             
             Request request = new Request.Builder()
@@ -719,72 +1946,110 @@ public class SyncService {
                 .addHeader("Authorization", "Bearer " + authToken)
                 .build();
             
-            Log.d(TAG, "Request built for observations, executing...");
-            
             try (Response response = httpClient.newCall(request).execute()) {
                 Log.d(TAG, "Observation response received. Status code: " + response.code());
                 
                 if (response.isSuccessful()) {
-                    try {
-                        assert response.body() != null;
-                        String responseBody = response.body().string();
-                        
-                        Log.d(TAG, "Response body length: " + responseBody.length());
-                        
-                        // Parse JSON array of observations
-                        JsonArray observationsArray = new com.google.gson.JsonParser()
-                            .parse(responseBody)
-                            .getAsJsonArray();
-                        
-                        Log.d(TAG, "Parsed JSON array with " + observationsArray.size() + " observations");
-                        
-                        List<Observation> observations = new java.util.ArrayList<>();
-                        com.google.gson.Gson gson = new com.google.gson.Gson();
-                        
-                        for (int i = 0; i < observationsArray.size(); i++) {
-                            try {
-                                JsonObject element = observationsArray.get(i).getAsJsonObject();
-                                Observation observation = gson.fromJson(element, Observation.class);
-                                
-                                // Map cloud's 'id' field to our 'cloudId' for tracking
-                                if (element.has("id")) {
-                                    observation.cloudId = element.get("id").getAsString();
-                                    // Don't use cloud's id as local primary key - let Room generate it
-                                    observation.id = 0;
-                                    Log.d(TAG, "Parsed observation " + (i + 1) + ": " + observation.title + " (cloudId: " + observation.cloudId + ")");
-                                }
-                                observations.add(observation);
-                            } catch (Exception e) {
-                                Log.w(TAG, "Failed to parse observation " + (i + 1) + ": " + e.getMessage(), e);
-                            }
-                        }
-                        
-                        Log.d(TAG, "Successfully fetched " + observations.size() + " observations from cloud");
-                        return observations;
-                    } catch (Exception e) {
-                        Log.e(TAG, "Failed to parse observation response: " + e.getMessage(), e);
-                        return null;
-                    }
+                    assert response.body() != null;
+                    return payloadDecoder.decodeObservations(response.body().charStream(), sink);
                 } else {
                     assert response.body() != null;
                     String errorBody = response.body().string();
                     Log.e(TAG, "Failed to fetch observations from cloud: " + response.code() + " - " + errorBody);
-                    return null;
+                    return -1;
                 }
             }
         } catch (IOException e) {
             Log.e(TAG, "Network error while fetching observations from cloud: " + e.getMessage(), e);
-            return null;
+            return -1;
+        }
+    }
+    
+    /**
+     * Delete rows from cloud backend, several per request when the server supports it
+     * Falls back to one request per row when the batch endpoint is unavailable.
+     * @param path collection path, e.g. "/hikes"
+     * @return the cloud IDs the server confirmed as deleted
+     */
+    private Set<String> deleteAllFromCloud(String path, List<String> cloudIds) {
+        if (cloudIds.size() > 1 && batchDeletesSupported) {
+            Set<String> deleted = postBatchDelete(path + "/batch-delete", cloudIds);
+            if (deleted != null) {
+                return deleted;
+            }
+        }
+        
+        Set<String> deleted = new HashSet<>();
+        for (String cloudId : cloudIds) {
+            if (deleteFromCloud(path + "/" + cloudId)) {
+                deleted.add(cloudId);
+            }
+        }
+        return deleted;
+    }
+    
+    /**
+     * Delete a batch of rows with a single request ({"ids": [...]})
+     * The server may list the IDs it deleted under "deleted"; otherwise a success covers all of them.
+     * @return the deleted cloud IDs (empty if the request failed), or null if the endpoint is unavailable
+     */
+    private Set<String> postBatchDelete(String endpoint, List<String> cloudIds) {
+        JsonArray ids = new JsonArray();
+        for (String cloudId : cloudIds) {
+            ids.add(cloudId);
+        }
+        JsonObject body = new JsonObject();
+        body.add("ids", ids);
+        
+        Request request = new Request.Builder()
+            .url(BASE_URL + endpoint)
+            .post(RequestBody.create(body.toString(), MediaType.parse("application/json")))
+            .addHeader("Content-Type", "application/json")
+            .addHeader("Authorization", "Bearer " + authToken)
+            .build();
+        
+        Set<String> deleted = new HashSet<>();
+        try (Response response = httpClient.newCall(request).execute()) {
+            int code = response.code();
+            if (code == 404 || code == 405 || code == 501) {
+                Log.w(TAG, "Batch endpoint " + endpoint + " not supported (HTTP " + code + "), using single deletes");
+                batchDeletesSupported = false;
+                return null;
+            }
+            
+            assert response.body() != null;
+            String responseBody = response.body().string();
+            if (!response.isSuccessful()) {
+                Log.e(TAG, "Batch delete to " + endpoint + " failed: " + code + " - " + responseBody);
+                return deleted;
+            }
+            
+            JsonObject json = responseBody.isEmpty() ? null : JsonParser.parseString(responseBody).getAsJsonObject();
+            if (json != null && json.has("deleted") && json.get("deleted").isJsonArray()) {
+                for (int i = 0; i < json.getAsJsonArray("deleted").size(); i++) {
+                    deleted.add(json.getAsJsonArray("deleted").get(i).getAsString());
+                }
+            } else {
+                deleted.addAll(cloudIds);
+            }
+            Log.d(TAG, "Batch delete to " + endpoint + " removed " + deleted.size() + "/" + cloudIds.size() + " rows");
+        } catch (IOException e) {
+            Log.e(TAG, "Network error during batch delete to " + endpoint + ": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to parse batch delete response from " + endpoint + ": " + e.getMessage(), e);
         }
+        return deleted;
     }
     
     /**
-     * Delete a hike from cloud backend
+     * Delete a single row from cloud backend
+     * Only a 2xx confirms the delete; the server answers 200 for a row that is already gone.
+     * A 404 means the route is missing (an older server), so the tombstone is kept and retried.
      * Returns true if successful, false otherwise
      */
-    private boolean deleteHikeFromCloud(String cloudId) {
+    private boolean deleteFromCloud(String path) {
         try {
-            String url = BASE_URL + "/hikes/" + cloudId;
+            String url = BASE_URL + path;
             
             Request request = new Request.Builder()
                 .url(url)
@@ -794,57 +2059,29 @@ public class SyncService {
             
             try (Response response = httpClient.newCall(request).execute()) {
                 if (response.isSuccessful()) {
-                    Log.d(TAG, "Successfully deleted hike from cloud: " + cloudId);
+                    Log.d(TAG, "Successfully deleted from cloud: " + path);
                     return true;
                 } else {
                     assert response.body() != null;
                     String errorBody = response.body().string();
-                    Log.e(TAG, "Failed to delete hike from cloud " + cloudId + ": " + response.code() + " - " + errorBody);
+                    Log.e(TAG, "Failed to delete from cloud " + path + ": " + response.code() + " - " + errorBody);
                     return false;
                 }
             }
         } catch (IOException e) {
-            Log.e(TAG, "Network error while deleting hike from cloud: " + e.getMessage(), e);
+            Log.e(TAG, "Network error while deleting " + path + " from cloud: " + e.getMessage(), e);
             return false;
         }
     }
     
     /**
-     * Sync a single observation to the cloud
+     * Post an already-built observation payload to the cloud
      * Returns true if successful, false otherwise
      */
-    private boolean syncObservationToCloud(Observation observation) {
+    private boolean syncObservationToCloud(Observation observation, JsonObject body) {
         try {
             String url = BASE_URL + "/observations";
             
-            // Build request body from observation object
-            JsonObject body = new JsonObject();
-            body.addProperty("title", observation.title);
-            body.addProperty("userId", authService.getUserId());
-            body.addProperty("hikeId", observation.hikeId);
-            body.addProperty("time", observation.time);
-            body.addProperty("comments", observation.comments != null ? observation.comments : "");
-            body.addProperty("status", observation.status);
-            
-            // Add optional geolocation data
-            if (observation.latitude != null && observation.longitude != null) {
-                body.addProperty("lat", observation.latitude);
-                body.addProperty("lng", observation.longitude);
-            }
-            
-            // Upload image to Cloudinary if present
-            if (observation.imageUri != null && !observation.imageUri.isEmpty()) {
-                Uri imageUri = Uri.parse(observation.imageUri);
-                String cloudinaryUrl = cloudinaryHelper.uploadImage(imageUri);
-                
-                if (cloudinaryUrl != null) {
-                    body.addProperty("imageUrl", cloudinaryUrl);
-                    Log.d(TAG, "Image uploaded to Cloudinary: " + cloudinaryUrl);
-                } else {
-                    Log.w(TAG, "Failed to upload image for observation: " + observation.title);
-                }
-            }
-            
             RequestBody requestBody = RequestBody.create(
                 body.toString(),
                 MediaType.parse("application/json")
@@ -855,6 +2092,8 @@ public class SyncService {
                 .post(requestBody)
                 .addHeader("Content-Type", "application/json")
                 .addHeader("Authorization", "Bearer " + authToken)
+                .addHeader("Idempotency-Key",
+                    uploadLedger.begin(UploadLedgerEntry.TYPE_OBSERVATION, observation.id).requestKey)
                 .build();
             
             // Make synchronous call
@@ -863,13 +2102,21 @@ public class SyncService {
                     try {
                         assert response.body() != null;
                         JSONObject responseJson = new JSONObject(response.body().string());
-                        String cloudId = responseJson.optString("id");
+                        String cloudId = emptyToNull(responseJson.optString("id"));
+                        if (cloudId == null) {
+                            // Created but unidentified; the retry sends the same Idempotency-Key and gets the row back
+                            Log.e(TAG, "Observation " + observation.title + " created without a cloud ID in the response");
+                            return false;
+                        }
                         
                         // Store cloud ID for future updates
                         observation.cloudId = cloudId;
+                        observation.cloudVersion = responseJson.optLong("rowversion", 0);
+                        uploadLedger.recordCreated(UploadLedgerEntry.TYPE_OBSERVATION, observation.id, cloudId);
                         Log.d(TAG, "Successfully synced observation: " + observation.title + " with cloud ID: " + cloudId);
                         return true;
                     } catch (JSONException e) {
+                        // The ledger keeps the request key, so the retry is answered with the same observation
                         Log.e(TAG, "Failed to parse observation response: " + e.getMessage());
                         return false;
                     }
@@ -887,49 +2134,87 @@ public class SyncService {
     }
 
     /**
-     * Download image from Cloudinary URL and save to local persistent storage
-     * @param cloudinaryUrl The Cloudinary image URL
-     * @return Local file path if successful, null otherwise
+     * Build the observation payload without the image (the image upload is done by buildObservationBody)
      */
-    private String downloadImageFromCloudinary(String cloudinaryUrl) {
-        if (cloudinaryUrl == null || cloudinaryUrl.isEmpty()) {
-            return null;
+    private JsonObject buildObservationFields(Observation observation, String hikeCloudId) {
+        JsonObject body = new JsonObject();
+        body.addProperty("title", observation.title);
+        body.addProperty("userId", authService.getUserId());
+        // The server links observations by the parent's cloud ID, not the local row ID
+        body.addProperty("hikeId", hikeCloudId);
+        body.addProperty("time", observation.time);
+        body.addProperty("comments", observation.comments != null ? observation.comments : "");
+        body.addProperty("status", observation.status);
+        
+        // Add optional geolocation data
+        if (observation.latitude != null && observation.longitude != null) {
+            body.addProperty("lat", observation.latitude);
+            body.addProperty("lng", observation.longitude);
         }
+        return body;
+    }
+    
+    /**
+     * Build the JSON payload for creating an observation in the cloud.
+     * Uploads the observation image to Cloudinary first if one is attached,
+     * using the downscaled copy from preparedImage when one was encoded.
+     */
+    private JsonObject buildObservationBody(Observation observation, String hikeCloudId,
+                                            Future<ImagePreprocessor.PreparedImage> preparedImage) {
+        JsonObject body = buildObservationFields(observation, hikeCloudId);
         
-        try {
-            // Create request to download image from Cloudinary
-            Request request = new Request.Builder()
-                .url(cloudinaryUrl)
-                .get()
-                .build();
-            
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (response.isSuccessful() && response.body() != null) {
-                    // Create images directory in app's internal storage (persistent)
-                    java.io.File imagesDir = new java.io.File(context.getFilesDir(), "observations");
-                    if (!imagesDir.exists()) {
-                        imagesDir.mkdirs();
-                    }
-                    
-                    // Save image with timestamp to avoid collisions
-                    java.io.File imageFile = new java.io.File(imagesDir, "observation_" + System.currentTimeMillis() + ".jpg");
-                    
-                    // Write image data to file
-                    byte[] bytes = response.body().bytes();
-                    try (java.io.FileOutputStream fos = new java.io.FileOutputStream(imageFile)) {
-                        fos.write(bytes);
-                        fos.flush();
-                    }
-                    
-                    Log.d(TAG, "Downloaded image from Cloudinary: " + imageFile.getAbsolutePath());
-                    return imageFile.getAbsolutePath();
+        // Upload image to Cloudinary if present
+        if (observation.imageUri != null && !observation.imageUri.isEmpty()) {
+            Uri imageUri = Uri.parse(observation.imageUri);
+            String cloudinaryUrl = uploadedImageUrl(observation);
+            if (cloudinaryUrl != null) {
+                // Uploaded by an earlier attempt whose record creation failed
+                Log.d(TAG, "Reusing uploaded image for observation: " + observation.title);
+            } else {
+                ImagePreprocessor.PreparedImage prepared = awaitPreparedImage(preparedImage);
+                if (prepared != null) {
+                    cloudinaryUrl = cloudinaryHelper.uploadImage(prepared);
+                } else if (preparedImage != null) {
+                    // The background encode already failed; decoding again would fail the same way
+                    cloudinaryUrl = cloudinaryHelper.uploadOriginal(imageUri);
                 } else {
-                    Log.w(TAG, "Failed to download image from Cloudinary: HTTP " + (response != null ? response.code() : "unknown"));
-                    return null;
+                    cloudinaryUrl = cloudinaryHelper.uploadImage(imageUri);
+                }
+                String contentHash = imageContentHash(observation.imageUri);
+                if (cloudinaryUrl != null && contentHash != null) {
+                    uploadLedger.recordImageUploaded(UploadLedgerEntry.TYPE_OBSERVATION, observation.id,
+                        contentHash, cloudinaryUrl);
                 }
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Error downloading image from Cloudinary: " + e.getMessage(), e);
+            
+            if (cloudinaryUrl != null) {
+                body.addProperty("imageUrl", cloudinaryUrl);
+                Log.d(TAG, "Image uploaded to Cloudinary: " + cloudinaryUrl);
+            } else {
+                Log.w(TAG, "Failed to upload image for observation: " + observation.title);
+            }
+        } else if (observation.cloudImageUrl != null && !observation.cloudImageUrl.isEmpty()) {
+            // Downloaded observation whose image was never fetched locally: keep the existing remote image
+            body.addProperty("imageUrl", observation.cloudImageUrl);
+        }
+        
+        return body;
+    }
+    
+    /**
+     * Wait for a background image encode; null if there was none or it failed
+     */
+    private ImagePreprocessor.PreparedImage awaitPreparedImage(Future<ImagePreprocessor.PreparedImage> preparedImage) {
+        if (preparedImage == null) {
+            return null;
+        }
+        try {
+            return preparedImage.get();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Image preprocessing failed, uploading original: " + e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
         }
     }
@@ -0,0 +1,134 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * SyncStateStore - Persists sync bookkeeping between runs
+ * Keeps a per-account high-water mark (max cloud updatedAt seen) so that
+ * cloud-to-offline sync only has to download rows changed since the last run,
+ * plus checkpoints that let a run cut off by a process kill resume where it stopped.
+ * Checkpoints are written with commit() since they matter exactly when the process dies.
+ */
+public class SyncStateStore {
+    
+    private static final String TAG = "SyncStateStore";
+    private static final String PREFS_NAME = "m_hike_sync";
+    private static final String HIKE_WATERMARK_KEY_PREFIX = "hike_watermark_";
+    private static final String DOWNLOAD_CHECKPOINT_SINCE_KEY_PREFIX = "download_checkpoint_since_";
+    private static final String DOWNLOAD_CHECKPOINT_UPDATED_AT_KEY_PREFIX = "download_checkpoint_updated_at_";
+    private static final String DOWNLOAD_CHECKPOINT_CLOUD_ID_KEY_PREFIX = "download_checkpoint_cloud_id_";
+    private static final String UPLOAD_RUNNING_KEY = "upload_running";
+    private static final String DOWNLOAD_RUNNING_KEY = "download_running";
+    
+    private final SharedPreferences prefs;
+    
+    public SyncStateStore(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+    
+    /**
+     * Get the max cloud updatedAt already applied locally for this account
+     * Returns 0 when the account has never completed a download (full pull)
+     */
+    public long getHikeWatermark(long userId) {
+        return prefs.getLong(HIKE_WATERMARK_KEY_PREFIX + userId, 0);
+    }
+    
+    /**
+     * Save the max cloud updatedAt applied locally for this account
+     */
+    public void setHikeWatermark(long userId, long updatedAt) {
+        prefs.edit()
+            .putLong(HIKE_WATERMARK_KEY_PREFIX + userId, updatedAt)
+            .apply();
+        Log.d(TAG, "Hike watermark for user " + userId + " advanced to " + updatedAt);
+    }
+    
+    /**
+     * Get the (updatedAt, cloud ID) of the last downloaded row applied for this account
+     * Only valid while the download still starts from the same watermark
+     * @return null when there is no checkpoint for this watermark
+     */
+    public DownloadCursor getDownloadCheckpoint(long userId, long since) {
+        if (prefs.getLong(DOWNLOAD_CHECKPOINT_SINCE_KEY_PREFIX + userId, -1) != since) {
+            return null;
+        }
+        return new DownloadCursor(prefs.getLong(DOWNLOAD_CHECKPOINT_UPDATED_AT_KEY_PREFIX + userId, since),
+            prefs.getLong(DOWNLOAD_CHECKPOINT_CLOUD_ID_KEY_PREFIX + userId, 0));
+    }
+    
+    /**
+     * Save the position up to which the download starting at since was fully applied
+     */
+    public void setDownloadCheckpoint(long userId, long since, DownloadCursor cursor) {
+        prefs.edit()
+            .putLong(DOWNLOAD_CHECKPOINT_SINCE_KEY_PREFIX + userId, since)
+            .putLong(DOWNLOAD_CHECKPOINT_UPDATED_AT_KEY_PREFIX + userId, cursor.updatedAt)
+            .putLong(DOWNLOAD_CHECKPOINT_CLOUD_ID_KEY_PREFIX + userId, cursor.cloudId)
+            .commit();
+    }
+    
+    /**
+     * Drop the download checkpoint (the download completed and the watermark moved on)
+     */
+    public void clearDownloadCheckpoint(long userId) {
+        prefs.edit()
+            .remove(DOWNLOAD_CHECKPOINT_SINCE_KEY_PREFIX + userId)
+            .remove(DOWNLOAD_CHECKPOINT_UPDATED_AT_KEY_PREFIX + userId)
+            .remove(DOWNLOAD_CHECKPOINT_CLOUD_ID_KEY_PREFIX + userId)
+            .commit();
+    }
+    
+    /**
+     * Mark whether an upload run is in progress; a mark left set means the process died mid-run
+     */
+    public void setUploadRunning(boolean running) {
+        prefs.edit().putBoolean(UPLOAD_RUNNING_KEY, running).commit();
+    }
+    
+    /**
+     * Whether the last upload run was cut off before it finished
+     * Only meaningful when no upload is running in this process
+     */
+    public boolean isUploadInterrupted() {
+        return prefs.getBoolean(UPLOAD_RUNNING_KEY, false);
+    }
+    
+    /**
+     * Mark whether a download run is in progress; a mark left set means the process died mid-run
+     */
+    public void setDownloadRunning(boolean running) {
+        prefs.edit().putBoolean(DOWNLOAD_RUNNING_KEY, running).commit();
+    }
+    
+    /**
+     * Whether the last download run was cut off before it finished
+     * Only meaningful when no download is running in this process
+     */
+    public boolean isDownloadInterrupted() {
+        return prefs.getBoolean(DOWNLOAD_RUNNING_KEY, false);
+    }
+    
+    /**
+     * A position in the download order: rows are returned by (updatedAt, cloud ID)
+     */
+    public static class DownloadCursor {
+        public final long updatedAt;
+        public final long cloudId;
+        
+        public DownloadCursor(long updatedAt, long cloudId) {
+            this.updatedAt = updatedAt;
+            this.cloudId = cloudId;
+        }
+    }
+    
+    /**
+     * Forget all sync bookkeeping (local data was wiped, next download must be a full pull)
+     */
+    public void clear() {
+        prefs.edit().clear().apply();
+        Log.d(TAG, "Sync state cleared");
+    }
+}
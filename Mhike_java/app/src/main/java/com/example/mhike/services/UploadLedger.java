@@ -0,0 +1,128 @@
+package com.example.mhike.services;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.mhike.database.AppDatabase;
+import com.example.mhike.database.daos.UploadLedgerDao;
+import com.example.mhike.database.entities.UploadLedgerEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * UploadLedger - Remembers which upload steps already succeeded for a local row
+ * Observation sync is two steps (image to Cloudinary, then the record to the API);
+ * hike sync is one. Each completed step is written here first, so a retry after a
+ * failure or crash skips it, and create requests carry a stable request key the
+ * server can use to drop repeats.
+ * All methods are blocking and meant for sync background threads.
+ */
+public class UploadLedger {
+    
+    private static final String TAG = "UploadLedger";
+    
+    private final Context context;
+    private final UploadLedgerDao ledgerDao;
+    
+    public UploadLedger(Context context) {
+        this.context = context.getApplicationContext();
+        this.ledgerDao = AppDatabase.getInstance(context).uploadLedgerDao();
+    }
+    
+    /**
+     * Get the entry for a row, creating one with a new request key on the first attempt
+     */
+    public UploadLedgerEntry begin(String entityType, long localId) {
+        UploadLedgerEntry entry = ledgerDao.getEntrySync(entityType, localId);
+        if (entry == null) {
+            entry = new UploadLedgerEntry();
+            entry.entityType = entityType;
+            entry.localId = localId;
+            entry.requestKey = UUID.randomUUID().toString();
+            entry.updatedAt = System.currentTimeMillis();
+            ledgerDao.upsert(entry);
+        }
+        return entry;
+    }
+    
+    /**
+     * Get the URL an image was already uploaded to for this row, if the image is unchanged
+     * @return the Cloudinary URL, or null if this image still has to be uploaded
+     */
+    public String getUploadedImageUrl(String entityType, long localId, String contentHash) {
+        if (contentHash == null) {
+            return null;
+        }
+        UploadLedgerEntry entry = ledgerDao.getEntrySync(entityType, localId);
+        if (entry != null && contentHash.equals(entry.contentHash)) {
+            return entry.imageUrl;
+        }
+        return null;
+    }
+    
+    /**
+     * Record that the row's image was uploaded
+     */
+    public void recordImageUploaded(String entityType, long localId, String contentHash, String imageUrl) {
+        UploadLedgerEntry entry = begin(entityType, localId);
+        entry.contentHash = contentHash;
+        entry.imageUrl = imageUrl;
+        entry.updatedAt = System.currentTimeMillis();
+        ledgerDao.upsert(entry);
+    }
+    
+    /**
+     * Record that the row was created in the cloud
+     */
+    public void recordCreated(String entityType, long localId, String cloudId) {
+        UploadLedgerEntry entry = begin(entityType, localId);
+        entry.cloudId = cloudId;
+        entry.updatedAt = System.currentTimeMillis();
+        ledgerDao.upsert(entry);
+    }
+    
+    /**
+     * Forget a row once it is marked as synced locally
+     */
+    public void complete(String entityType, long localId) {
+        ledgerDao.delete(entityType, localId);
+    }
+    
+    /**
+     * Forget every in-progress upload (local data was wiped, local IDs will be reused)
+     */
+    public void clear() {
+        ledgerDao.deleteAll();
+    }
+    
+    /**
+     * SHA-256 of an image's bytes; images in ObservationImageStore are already named by it
+     * @return the hex digest, or null if the image cannot be read
+     */
+    public String hashImage(String imageUri) {
+        String name = new File(imageUri).getName();
+        if (new ObservationImageStore(context).contains(imageUri) && name.matches("[0-9a-f]{64}\\.jpg")) {
+            return name.substring(0, 64);
+        }
+        
+        try (InputStream in = ImagePreprocessor.openImageStream(context, Uri.parse(imageUri))) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.w(TAG, "Cannot hash image " + imageUri + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -7,11 +7,15 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
 
 import com.example.mhike.R;
+import com.example.mhike.services.AuthService;
+import com.example.mhike.services.SyncCoordinator;
 import com.example.mhike.ui.discovery.DiscoveryFragment;
 import com.example.mhike.ui.home.HomeFragment;
 import com.example.mhike.ui.profile.ProfileFragment;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
+import okhttp3.OkHttpClient;
+
 /**
  * MainActivity - Tab navigation container for app main features
  * Hosts HomeFragment, DiscoveryFragment, and ProfileFragment
@@ -41,6 +45,12 @@ public class MainActivity extends AppCompatActivity {
             // Load home fragment by default
             loadFragment(homeFragment);
             bottomNavigationView.setSelectedItemId(R.id.navigation_home);
+            
+            // Finish a sync the previous process was killed in the middle of
+            AuthService authService = new AuthService(this, new OkHttpClient());
+            if (authService.isLoggedIn()) {
+                SyncCoordinator.getInstance(this).resumeIfInterrupted(authService.getToken());
+            }
         }
     }
     
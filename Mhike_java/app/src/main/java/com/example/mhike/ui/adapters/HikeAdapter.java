@@ -3,30 +3,35 @@ package com.example.mhike.ui.adapters;
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
 import com.example.mhike.R;
-import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.HikeSummary;
+import com.example.mhike.services.ObservationImageCache;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textview.MaterialTextView;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * RecyclerView adapter for displaying hikes in a list.
+ * Binds HikeSummary rows; listeners get the row and open the full hike by its id.
  */
 public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder> {
     
-    private List<Hike> hikes = new ArrayList<>();
+    private List<HikeSummary> hikes = new ArrayList<>();
     private final OnHikeClickListener onHikeClickListener;
     private final Context context;
     
     public interface OnHikeClickListener {
-        void onHikeClick(Hike hike);
-        void onHikeLongClick(Hike hike);
+        void onHikeClick(HikeSummary hike);
+        void onHikeLongClick(HikeSummary hike);
     }
     
     public HikeAdapter(Context context, OnHikeClickListener onHikeClickListener) {
@@ -45,7 +50,7 @@ public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder
     
     @Override
     public void onBindViewHolder(@NonNull HikeViewHolder holder, int position) {
-        Hike hike = hikes.get(position);
+        HikeSummary hike = hikes.get(position);
         holder.bind(hike, context);
     }
     
@@ -57,7 +62,7 @@ public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder
     /**
      * Update the list of hikes
      */
-    public void setHikes(List<Hike> newHikes) {
+    public void setHikes(List<HikeSummary> newHikes) {
         this.hikes = newHikes != null ? newHikes : new ArrayList<>();
         notifyDataSetChanged();
     }
@@ -72,8 +77,10 @@ public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder
         private final MaterialTextView hikeDate;
         private final MaterialTextView hikeLength;
         private final MaterialTextView hikeDifficulty;
+        private final MaterialTextView hikeObservationCount;
+        private final ImageView hikeCoverImage;
         private final MaterialButton syncStatusBadge;
-        private Hike currentHike;
+        private HikeSummary currentHike;
         private final OnHikeClickListener onHikeClickListener;
         
         public HikeViewHolder(@NonNull android.view.View itemView, OnHikeClickListener onHikeClickListener) {
@@ -86,6 +93,8 @@ public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder
             hikeDate = itemView.findViewById(R.id.hikeDate);
             hikeLength = itemView.findViewById(R.id.hikeLength);
             hikeDifficulty = itemView.findViewById(R.id.hikeDifficulty);
+            hikeObservationCount = itemView.findViewById(R.id.hikeObservationCount);
+            hikeCoverImage = itemView.findViewById(R.id.hikeCoverImage);
             syncStatusBadge = itemView.findViewById(R.id.syncStatusBadge);
             
             // Set click listeners
@@ -104,7 +113,7 @@ public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder
             });
         }
         
-        public void bind(Hike hike, Context context) {
+        public void bind(HikeSummary hike, Context context) {
             this.currentHike = hike;
             
             hikeName.setText(hike.name);
@@ -112,6 +121,8 @@ public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder
             hikeDate.setText(hike.date);
             hikeLength.setText(String.format("%.1f km", hike.length));
             hikeDifficulty.setText(hike.difficulty);
+            hikeObservationCount.setText(String.valueOf(hike.observationCount));
+            bindCoverImage(hike.coverImage, context);
             
             // Set sync status badge
             if (hike.syncStatus == 0) {
@@ -141,5 +152,47 @@ public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.HikeViewHolder
             }
             hikeDifficulty.setTextColor(difficultyColor);
         }
+        
+        /**
+         * Show the cover photo: a local file directly, a cloud URL once the image cache has it
+         * Glide decodes it off the main thread at thumbnail size and drops the load if the row is rebound.
+         */
+        private void bindCoverImage(String coverImage, Context context) {
+            Glide.with(context).clear(hikeCoverImage);
+            hikeCoverImage.setVisibility(android.view.View.GONE);
+            if (coverImage == null || coverImage.isEmpty()) {
+                return;
+            }
+            if (!coverImage.startsWith("http://") && !coverImage.startsWith("https://")) {
+                showCoverImage(new File(coverImage), context);
+                return;
+            }
+            ObservationImageCache.getInstance(context).load(coverImage, new ObservationImageCache.LoadCallback() {
+                @Override
+                public void onImageLoaded(String url, File file) {
+                    // The holder may have been rebound to another hike meanwhile
+                    if (currentHike != null && url.equals(currentHike.coverImage)) {
+                        showCoverImage(file, context);
+                    }
+                }
+                
+                @Override
+                public void onImageFailed(String url) {
+                    // Leave the cover hidden; it is retried next time the row is shown
+                }
+            });
+        }
+        
+        private void showCoverImage(File file, Context context) {
+            if (!file.exists()) {
+                return;
+            }
+            hikeCoverImage.setVisibility(android.view.View.VISIBLE);
+            Glide.with(context)
+                .load(file)
+                .override(hikeCoverImage.getLayoutParams().width)
+                .centerCrop()
+                .into(hikeCoverImage);
+        }
     }
 }
@@ -1,8 +1,6 @@
 package com.example.mhike.ui.adapters;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -10,8 +8,10 @@ import android.widget.ImageView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
 import com.example.mhike.R;
-import com.example.mhike.database.entities.Observation;
+import com.example.mhike.database.entities.ObservationSummary;
+import com.example.mhike.services.ObservationImageCache;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textview.MaterialTextView;
 
@@ -21,16 +21,17 @@ import java.util.List;
 
 /**
  * RecyclerView adapter for displaying observations in a list.
+ * Binds ObservationSummary rows; edits load the full observation by its id.
  */
 public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.ObservationViewHolder> {
     
-    private List<Observation> observations = new ArrayList<>();
+    private List<ObservationSummary> observations = new ArrayList<>();
     private final OnObservationClickListener onObservationClickListener;
     private final Context context;
     
     public interface OnObservationClickListener {
-        void onDeleteClick(Observation observation);
-        void onEditClick(Observation observation);
+        void onDeleteClick(ObservationSummary observation);
+        void onEditClick(ObservationSummary observation);
     }
     
     public ObservationAdapter(Context context, OnObservationClickListener onObservationClickListener) {
@@ -49,7 +50,7 @@ public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.
     
     @Override
     public void onBindViewHolder(@NonNull ObservationViewHolder holder, int position) {
-        Observation observation = observations.get(position);
+        ObservationSummary observation = observations.get(position);
         holder.bind(observation, context);
     }
     
@@ -61,7 +62,7 @@ public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.
     /**
      * Update the list of observations
      */
-    public void setObservations(List<Observation> newObservations) {
+    public void setObservations(List<ObservationSummary> newObservations) {
         this.observations = newObservations != null ? newObservations : new ArrayList<>();
         notifyDataSetChanged();
     }
@@ -79,7 +80,7 @@ public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.
         private final MaterialButton statusBadge;
         private final MaterialButton deleteButton;
         private final MaterialButton editButton;
-        private Observation currentObservation;
+        private ObservationSummary currentObservation;
         private final OnObservationClickListener onObservationClickListener;
         
         public ObservationViewHolder(@NonNull android.view.View itemView, 
@@ -112,7 +113,7 @@ public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.
             });
         }
         
-        public void bind(Observation observation, Context context) {
+        public void bind(ObservationSummary observation, Context context) {
             this.currentObservation = observation;
             
             observationTitle.setText(observation.title);
@@ -135,27 +136,7 @@ public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.
                 observationLocation.setVisibility(android.view.View.GONE);
             }
             
-            // Load and display image if exists
-            if (observation.imageUri != null && !observation.imageUri.isEmpty()) {
-                try {
-                    File imageFile = new File(observation.imageUri);
-                    if (imageFile.exists()) {
-                        Bitmap bitmap = BitmapFactory.decodeFile(imageFile.getAbsolutePath());
-                        if (bitmap != null) {
-                            observationImage.setImageBitmap(bitmap);
-                            observationImage.setVisibility(android.view.View.VISIBLE);
-                        } else {
-                            observationImage.setVisibility(android.view.View.GONE);
-                        }
-                    } else {
-                        observationImage.setVisibility(android.view.View.GONE);
-                    }
-                } catch (Exception e) {
-                    observationImage.setVisibility(android.view.View.GONE);
-                }
-            } else {
-                observationImage.setVisibility(android.view.View.GONE);
-            }
+            bindImage(observation, context);
             
             // Set status badge
             if (observation.status != null && !observation.status.isEmpty()) {
@@ -182,5 +163,53 @@ public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.
                 statusBadge.setVisibility(android.view.View.GONE);
             }
         }
+        
+        /**
+         * Show the observation's image: the local file directly, a downloaded one's cloud URL
+         * once the image cache has it. Glide decodes it off the main thread at display size and
+         * drops the load if the row is rebound.
+         */
+        private void bindImage(ObservationSummary observation, Context context) {
+            Glide.with(context).clear(observationImage);
+            observationImage.setVisibility(android.view.View.GONE);
+            if (observation.imageUri != null && !observation.imageUri.isEmpty()) {
+                showImage(new File(observation.imageUri), context);
+                return;
+            }
+            if (observation.cloudImageUrl == null || observation.cloudImageUrl.isEmpty()) {
+                return;
+            }
+            // Downloaded observation: fetch the image on first display
+            ObservationImageCache.getInstance(context).load(observation.cloudImageUrl,
+                new ObservationImageCache.LoadCallback() {
+                    @Override
+                    public void onImageLoaded(String url, File file) {
+                        // The holder may have been rebound to another observation meanwhile
+                        if (currentObservation != null && url.equals(currentObservation.cloudImageUrl)
+                                && currentObservation.imageUri == null) {
+                            showImage(file, context);
+                        }
+                    }
+                    
+                    @Override
+                    public void onImageFailed(String url) {
+                        // Leave the image hidden; it is retried next time the row is shown
+                    }
+                });
+        }
+        
+        private void showImage(File file, Context context) {
+            if (!file.exists()) {
+                return;
+            }
+            // The image spans the row at a fixed height; decode no larger than that
+            observationImage.setVisibility(android.view.View.VISIBLE);
+            Glide.with(context)
+                .load(file)
+                .override(context.getResources().getDisplayMetrics().widthPixels,
+                    observationImage.getLayoutParams().height)
+                .centerCrop()
+                .into(observationImage);
+        }
     }
 }
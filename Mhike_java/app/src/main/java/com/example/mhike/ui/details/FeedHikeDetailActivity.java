@@ -19,8 +19,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mhike.R;
 import com.example.mhike.database.entities.Hike;
-import com.example.mhike.database.entities.Observation;
+import com.example.mhike.database.entities.ObservationSummary;
 import com.example.mhike.services.LocationManager;
+import com.example.mhike.services.ObservationImageStore;
 import com.example.mhike.ui.adapters.ObservationAdapter;
 import com.example.mhike.ui.location.PickLocationActivity;
 import com.example.mhike.ui.viewmodels.HikeViewModel;
@@ -28,8 +29,6 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textview.MaterialTextView;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
@@ -147,24 +146,15 @@ public class FeedHikeDetailActivity extends AppCompatActivity implements Observa
     }
     
     /**
-     * Save image from URI to app's cache directory
+     * Save image from URI to app's files directory (persistent, content-addressed storage)
      */
     private String saveImageToCache(Uri imageUri) {
         try {
             // Read bitmap from URI
             Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
             
-            // Create cache directory if needed
-            File cacheDir = getCacheDir();
-            File imageFile = new File(cacheDir, "observation_" + System.currentTimeMillis() + ".jpg");
-            
-            // Write bitmap to file
-            try (FileOutputStream fos = new FileOutputStream(imageFile)) {
-                bitmap.compress(Bitmap.CompressFormat.JPEG, 85, fos);
-                fos.flush();
-            }
-            
-            return imageFile.getAbsolutePath();
+            // Identical photos share one file in the store
+            return new ObservationImageStore(this).save(bitmap);
         } catch (IOException e) {
             showSnackbar("Failed to save image: " + e.getMessage());
             return null;
@@ -307,13 +297,13 @@ public class FeedHikeDetailActivity extends AppCompatActivity implements Observa
     }
     
     @Override
-    public void onDeleteClick(Observation observation) {
+    public void onDeleteClick(ObservationSummary observation) {
         // Feed hikes are read-only - cannot delete observations from feed view
         showSnackbar("Cannot delete observations from feed view");
     }
     
     @Override
-    public void onEditClick(Observation observation) {
+    public void onEditClick(ObservationSummary observation) {
         // Feed hikes are read-only - cannot edit observations from feed view
         showSnackbar("Cannot edit observations from feed view");
     }
@@ -14,6 +14,8 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -21,8 +23,11 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.mhike.R;
 import com.example.mhike.database.entities.Hike;
 import com.example.mhike.database.entities.Observation;
+import com.example.mhike.database.entities.ObservationSummary;
 import com.example.mhike.services.LocationManager;
+import com.example.mhike.services.ObservationImageStore;
 import com.example.mhike.services.AuthService;
+import com.example.mhike.services.SyncCoordinator;
 import com.example.mhike.services.SyncService;
 import com.example.mhike.ui.add.AddHikeActivity;
 import com.example.mhike.ui.adapters.ObservationAdapter;
@@ -32,8 +37,6 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textview.MaterialTextView;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
@@ -139,28 +142,15 @@ public class HikeDetailActivity extends AppCompatActivity implements Observation
     }
     
     /**
-     * Save image from URI to app's files directory (persistent storage)
+     * Save image from URI to app's files directory (persistent, content-addressed storage)
      */
     private String saveImageToCache(Uri imageUri) {
         try {
             // Read bitmap from URI
             Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
             
-            // Create images directory in app's internal storage (persistent, not cleared by system)
-            File imagesDir = new File(getFilesDir(), "observations");
-            if (!imagesDir.exists()) {
-                imagesDir.mkdirs();
-            }
-            
-            File imageFile = new File(imagesDir, "observation_" + System.currentTimeMillis() + ".jpg");
-            
-            // Write bitmap to file
-            try (FileOutputStream fos = new FileOutputStream(imageFile)) {
-                bitmap.compress(Bitmap.CompressFormat.JPEG, 85, fos);
-                fos.flush();
-            }
-            
-            return imageFile.getAbsolutePath();
+            // Identical photos share one file in the store
+            return new ObservationImageStore(this).save(bitmap);
         } catch (IOException e) {
             showSnackbar("Failed to save image: " + e.getMessage());
             return null;
@@ -468,10 +458,14 @@ public class HikeDetailActivity extends AppCompatActivity implements Observation
                         observation.longitude = selectedLongitude.floatValue();
                     }
                     
-                    // Save image if selected
-                    if (selectedImageUri != null) {
+                    // Save image if a new one was selected (the current one is already stored)
+                    if (selectedImageUri != null
+                            && !selectedImageUri.toString().equals(observation.imageUri)) {
                         String savedImagePath = saveImageToCache(selectedImageUri);
-                        if (savedImagePath != null) {
+                        if (savedImagePath != null && savedImagePath.equals(observation.imageUri)) {
+                            // Same content as the current image, which the row already references
+                            new ObservationImageStore(this).commit(savedImagePath);
+                        } else if (savedImagePath != null) {
                             observation.imageUri = savedImagePath;
                         }
                     }
@@ -490,7 +484,7 @@ public class HikeDetailActivity extends AppCompatActivity implements Observation
     }
     
     @Override
-    public void onDeleteClick(Observation observation) {
+    public void onDeleteClick(ObservationSummary observation) {
         new AlertDialog.Builder(this)
             .setTitle("Delete Observation")
             .setMessage("Are you sure you want to delete this observation?")
@@ -502,8 +496,18 @@ public class HikeDetailActivity extends AppCompatActivity implements Observation
     }
     
     @Override
-    public void onEditClick(Observation observation) {
-        showAddObservationDialog(observation, false);
+    public void onEditClick(ObservationSummary observation) {
+        // List rows are summaries; the edit dialog needs the full observation
+        LiveData<Observation> stored = viewModel.getObservationById(observation.id);
+        stored.observe(this, new Observer<Observation>() {
+            @Override
+            public void onChanged(Observation full) {
+                stored.removeObserver(this);
+                if (full != null) {
+                    showAddObservationDialog(full, false);
+                }
+            }
+        });
     }
     
     @Override
@@ -540,13 +544,8 @@ public class HikeDetailActivity extends AppCompatActivity implements Observation
         // Trigger syncing of unsynced observations
         Toast.makeText(this, "Syncing observations...", Toast.LENGTH_SHORT).show();
         
-        SyncService syncService = new SyncService(
-            this, 
-            new okhttp3.OkHttpClient(), 
-            authService.getToken()
-        );
-        
-        syncService.syncAllOfflineHikes(new SyncService.SyncCallback() {
+        // Joins the upload already in progress, if any; results arrive on a background thread
+        SyncCoordinator.getInstance(this).syncOfflineToCloud(authService.getToken(), new SyncService.SyncCallback() {
             @Override
             public void onSyncStart(int totalHikes) {
             }
@@ -557,20 +556,20 @@ public class HikeDetailActivity extends AppCompatActivity implements Observation
             
             @Override
             public void onSyncSuccess(SyncService.SyncResult result) {
-                Toast.makeText(
+                runOnUiThread(() -> Toast.makeText(
                     HikeDetailActivity.this, 
                     "Observations synced successfully", 
                     Toast.LENGTH_SHORT
-                ).show();
+                ).show());
             }
             
             @Override
             public void onSyncError(String errorMessage) {
-                Toast.makeText(
+                runOnUiThread(() -> Toast.makeText(
                     HikeDetailActivity.this, 
                     "Sync failed: " + errorMessage, 
                     Toast.LENGTH_SHORT
-                ).show();
+                ).show());
             }
         });
     }
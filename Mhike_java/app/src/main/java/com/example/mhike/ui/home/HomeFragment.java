@@ -13,12 +13,14 @@ import android.widget.LinearLayout;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mhike.R;
-import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.HikeFilter;
+import com.example.mhike.database.entities.HikeSummary;
 import com.example.mhike.ui.add.AddHikeActivity;
 import com.example.mhike.ui.adapters.HikeAdapter;
 import com.example.mhike.ui.details.HikeDetailActivity;
@@ -28,12 +30,17 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 
+import java.util.List;
+
 /**
  * HomeFragment - Displays user's hike list with CRUD operations
  * Moved from MainActivity
  */
 public class HomeFragment extends Fragment implements HikeAdapter.OnHikeClickListener {
     
+    // Start loading the next page when this many loaded hikes are left below the viewport
+    private static final int PREFETCH_DISTANCE = 10;
+    
     private HikeViewModel viewModel;
     private HikeAdapter hikeAdapter;
     private RecyclerView hikeRecyclerView;
@@ -43,6 +50,8 @@ public class HomeFragment extends Fragment implements HikeAdapter.OnHikeClickLis
     private Button filterButton;
     private Button syncButton;
     private View rootView;
+    private boolean announceFilterResults;
+    private LiveData<List<HikeSummary>> searchResults;  // Search bar results, null while the bar is empty
     
     public HomeFragment() {
         // Required empty public constructor
@@ -100,25 +109,50 @@ public class HomeFragment extends Fragment implements HikeAdapter.OnHikeClickLis
     
     private void setupRecyclerView() {
         hikeAdapter = new HikeAdapter(requireContext(), this);
-        hikeRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+        hikeRecyclerView.setLayoutManager(layoutManager);
         hikeRecyclerView.setAdapter(hikeAdapter);
+        
+        // Page in more hikes as the user nears the end of the loaded ones
+        hikeRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                // Search and filter results are not paged, only the full list is
+                if (dy > 0 && searchResults == null && !viewModel.isHikeFilterActive()
+                        && layoutManager.findLastVisibleItemPosition() >= hikeAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    viewModel.loadMoreHikes();
+                }
+            }
+        });
     }
     
     private void observeHikes() {
-        viewModel.getAllHikes().observe(getViewLifecycleOwner(), hikes -> {
-            hikeAdapter.setHikes(hikes);
-            
-            // Update empty state visibility
-            if (hikes == null || hikes.isEmpty()) {
-                emptyStateLayout.setVisibility(View.VISIBLE);
-                hikeRecyclerView.setVisibility(View.GONE);
-            } else {
-                emptyStateLayout.setVisibility(View.GONE);
-                hikeRecyclerView.setVisibility(View.VISIBLE);
+        viewModel.getFilteredHikes().observe(getViewLifecycleOwner(), hikes -> {
+            if (searchResults != null) {
+                // Search bar results are showing; this list comes back when the bar is cleared
+                return;
+            }
+            showHikes(hikes);
+            if (announceFilterResults) {
+                announceFilterResults = false;
+                showSnackbar("Found " + (hikes != null ? hikes.size() : 0) + " hikes", Snackbar.LENGTH_SHORT);
             }
         });
     }
     
+    private void showHikes(List<HikeSummary> hikes) {
+        hikeAdapter.setHikes(hikes);
+        
+        // Update empty state visibility
+        if (hikes == null || hikes.isEmpty()) {
+            emptyStateLayout.setVisibility(View.VISIBLE);
+            hikeRecyclerView.setVisibility(View.GONE);
+        } else {
+            emptyStateLayout.setVisibility(View.GONE);
+            hikeRecyclerView.setVisibility(View.VISIBLE);
+        }
+    }
+    
     private void setupListeners() {
         // FAB click
         addHikeFab.setOnClickListener(v -> {
@@ -149,12 +183,16 @@ public class HomeFragment extends Fragment implements HikeAdapter.OnHikeClickLis
     }
     
     private void performSearch(String query) {
+        // Only the latest query keeps an observer
+        if (searchResults != null) {
+            searchResults.removeObservers(getViewLifecycleOwner());
+            searchResults = null;
+        }
         if (query.isEmpty()) {
-            viewModel.getAllHikes().observe(getViewLifecycleOwner(), hikes -> {
-                hikeAdapter.setHikes(hikes);
-            });
+            showHikes(viewModel.getFilteredHikes().getValue());
         } else {
-            viewModel.searchHikes(query).observe(getViewLifecycleOwner(), hikes -> {
+            searchResults = viewModel.searchHikes(query);
+            searchResults.observe(getViewLifecycleOwner(), hikes -> {
                 hikeAdapter.setHikes(hikes);
             });
         }
@@ -175,18 +213,18 @@ public class HomeFragment extends Fragment implements HikeAdapter.OnHikeClickLis
     }
     
     @Override
-    public void onHikeClick(Hike hike) {
+    public void onHikeClick(HikeSummary hike) {
         Intent intent = new Intent(requireContext(), HikeDetailActivity.class);
         intent.putExtra("hike_id", hike.id);
         startActivity(intent);
     }
     
     @Override
-    public void onHikeLongClick(Hike hike) {
+    public void onHikeLongClick(HikeSummary hike) {
         showHikeOptionsDialog(hike);
     }
     
-    private void showHikeOptionsDialog(Hike hike) {
+    private void showHikeOptionsDialog(HikeSummary hike) {
         String[] options = {"View", "Edit", "Delete"};
         AlertDialog.Builder builder = new AlertDialog.Builder(requireContext());
         builder.setTitle(hike.name)
@@ -206,18 +244,18 @@ public class HomeFragment extends Fragment implements HikeAdapter.OnHikeClickLis
             .show();
     }
     
-    private void editHike(Hike hike) {
+    private void editHike(HikeSummary hike) {
         Intent intent = new Intent(requireContext(), AddHikeActivity.class);
         intent.putExtra("hike_id", hike.id);
         startActivity(intent);
     }
     
-    private void deleteHike(Hike hike) {
+    private void deleteHike(HikeSummary hike) {
         new AlertDialog.Builder(requireContext())
             .setTitle("Delete Hike")
             .setMessage("Are you sure you want to delete \"" + hike.name + "\"? This cannot be undone.")
             .setPositiveButton("Delete", (dialog, which) -> {
-                viewModel.deleteHike(hike);
+                viewModel.deleteHike(hike.id);
                 showSnackbar("Hike deleted", Snackbar.LENGTH_SHORT);
             })
             .setNegativeButton("Cancel", null)
@@ -265,17 +303,14 @@ public class HomeFragment extends Fragment implements HikeAdapter.OnHikeClickLis
                 }
             }
             
-            // Perform advanced search with all filters
-            viewModel.searchHikesWithFilters(
-                name.isEmpty() ? null : name,
-                location.isEmpty() ? null : location,
-                length,
-                date.isEmpty() ? null : date,
-                results -> {
-                    hikeAdapter.setHikes(results);
-                    showSnackbar("Found " + results.size() + " hikes", Snackbar.LENGTH_SHORT);
-                }
-            );
+            // Perform advanced search with all filters (minimum length, exact date)
+            HikeFilter filter = new HikeFilter()
+                .name(name)
+                .location(location)
+                .length(length != null && length > 0 ? length : null, null)
+                .dateRange(date, date);
+            announceFilterResults = !filter.isEmpty();
+            viewModel.setHikeFilter(filter);
             
             dialog.dismiss();
         });
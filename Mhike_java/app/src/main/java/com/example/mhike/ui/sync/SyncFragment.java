@@ -181,7 +181,10 @@ public class SyncFragment extends Fragment {
                         String resultMsg = "✓ Successful: " + result.successfulUploads + "\n" +
                                            "✗ Failed: " + result.failedUploads + "\n" +
                                            "⊘ Skipped: " + result.skippedHikes + "\n" +
-                                           "⏱ Duration: " + result.syncDuration + "ms";
+                                           "⏱ Duration: " + result.syncDuration + "ms\n" +
+                                           "⇉ Parallel requests: " + result.concurrencyLimit +
+                                           " (avg " + result.averageLatencyMs + "ms, " +
+                                           result.throttledResponses + " throttled)";
                         syncResultText.setText(resultMsg);
                         syncProgress.setProgress(result.totalHikes);
                     });
@@ -294,9 +297,13 @@ public class SyncFragment extends Fragment {
                         downloadStatusText.setText("Download completed!");
                         
                         String resultMsg = "✓ Downloaded: " + result.successfulInserts + "\n" +
+                                           "↻ Updated: " + result.updatedRows + "\n" +
                                            "✗ Failed: " + result.failedInserts + "\n" +
                                            "⊘ Duplicates: " + result.skippedDuplicates + "\n" +
-                                           "⏱ Duration: " + result.syncDuration + "ms";
+                                           "⏱ Duration: " + result.syncDuration + "ms\n" +
+                                           "⇉ Parallel requests: " + result.concurrencyLimit +
+                                           " (avg " + result.averageLatencyMs + "ms, " +
+                                           result.throttledResponses + " throttled)";
                         downloadResultText.setText(resultMsg);
                         downloadProgress.setProgress(result.totalDownloaded);
                     });
@@ -6,17 +6,37 @@ import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.room.InvalidationTracker;
 
 import com.example.mhike.database.AppDatabase;
+import com.example.mhike.database.FtsQuery;
+import com.example.mhike.database.HikeFilter;
 import com.example.mhike.database.daos.HikeDao;
 import com.example.mhike.database.daos.ObservationDao;
 import com.example.mhike.database.entities.Hike;
+import com.example.mhike.database.entities.HikeSummary;
 import com.example.mhike.database.entities.Observation;
+import com.example.mhike.database.entities.ObservationSummary;
+import com.example.mhike.database.entities.UploadLedgerEntry;
+import com.example.mhike.services.ChangeTracker;
+import com.example.mhike.services.ObservationImageStore;
+import com.example.mhike.services.SyncCoordinator;
+import com.example.mhike.services.SyncOutbox;
 import com.example.mhike.services.SyncService;
+import com.example.mhike.services.SyncStateStore;
+import com.example.mhike.services.UploadLedger;
 
 import okhttp3.OkHttpClient;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * ViewModel for managing hike-related data and UI logic.
@@ -24,33 +44,142 @@ import java.util.List;
  */
 public class HikeViewModel extends AndroidViewModel {
     
+    private static final int HIKE_PAGE_SIZE = 30;
+    // A sync writes many rows in quick succession; their invalidations share one reload
+    private static final long REFRESH_DELAY_MS = 300;
+    
+    private final AppDatabase database;
     private final HikeDao hikeDao;
     private final ObservationDao observationDao;
+    private final ObservationImageStore imageStore;
+    private final UploadLedger uploadLedger;
     
     // LiveData
     private final LiveData<List<Hike>> allHikes;
+    private final MutableLiveData<HikeFilter> hikeFilter = new MutableLiveData<>(new HikeFilter());
+    private final LiveData<List<HikeSummary>> filteredHikes;
     private final MutableLiveData<String> searchQuery = new MutableLiveData<>("");
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private final MutableLiveData<String> successMessage = new MutableLiveData<>();
     
+    // Paged hike list; loadedHikes and lastPageLoaded are only touched on pageExecutor
+    private final MutableLiveData<List<HikeSummary>> pagedHikes = new MutableLiveData<>();
+    private final ScheduledExecutorService pageExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean pagingStarted = new AtomicBoolean(false);
+    private final AtomicBoolean pageLoading = new AtomicBoolean(false);
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    private final InvalidationTracker.Observer hikesObserver;
+    private List<HikeSummary> loadedHikes = new ArrayList<>();
+    private boolean lastPageLoaded;
+    
     public HikeViewModel(@NonNull Application application) {
         super(application);
         
-        AppDatabase database = AppDatabase.getInstance(application);
+        database = AppDatabase.getInstance(application);
         hikeDao = database.hikeDao();
         observationDao = database.observationDao();
+        imageStore = new ObservationImageStore(application);
+        uploadLedger = new UploadLedger(application);
         
         allHikes = hikeDao.getAllHikes();
+        filteredHikes = Transformations.switchMap(hikeFilter, filter ->
+            filter == null || filter.isEmpty() ? getPagedHikes() : hikeDao.filterHikes(filter.toQuery()));
+        // Rows carry observation counts and cover photos, so observation changes refresh them too
+        hikesObserver = new InvalidationTracker.Observer("hikes", "observations") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                refreshHikePages();
+            }
+        };
     }
     
     /**
      * Get all hikes as LiveData
+     * Loads the whole table on every change; list screens use getPagedHikes instead
      */
     public LiveData<List<Hike>> getAllHikes() {
         return allHikes;
     }
     
+    /**
+     * Hike list rows loaded so far, newest first, growing a page at a time (see loadMoreHikes)
+     * The first call loads the first page and starts following changes to hikes and observations
+     */
+    public LiveData<List<HikeSummary>> getPagedHikes() {
+        if (pagingStarted.compareAndSet(false, true)) {
+            database.getInvalidationTracker().addObserver(hikesObserver);
+            loadMoreHikes();
+        }
+        return pagedHikes;
+    }
+    
+    /**
+     * Load the page of hikes after the last loaded one (keyset on date, time, id)
+     * Ignored while a filter is active (its results are not paged), while a page is loading
+     * or once the last page is in
+     */
+    public void loadMoreHikes() {
+        if (isHikeFilterActive() || !pageLoading.compareAndSet(false, true)) {
+            return;
+        }
+        pageExecutor.execute(() -> {
+            try {
+                if (lastPageLoaded) {
+                    return;
+                }
+                HikeSummary last = loadedHikes.isEmpty() ? null : loadedHikes.get(loadedHikes.size() - 1);
+                List<HikeSummary> page = last == null
+                    ? hikeDao.getFirstHikePageSync(HIKE_PAGE_SIZE)
+                    : hikeDao.getHikePageAfterSync(last.date, last.time, last.id, HIKE_PAGE_SIZE);
+                lastPageLoaded = page.size() < HIKE_PAGE_SIZE;
+                
+                List<HikeSummary> hikes = new ArrayList<>(loadedHikes.size() + page.size());
+                hikes.addAll(loadedHikes);
+                hikes.addAll(page);
+                loadedHikes = hikes;
+                pagedHikes.postValue(hikes);
+            } catch (Exception e) {
+                postErrorMessage("Failed to load hikes: " + e.getMessage());
+            } finally {
+                pageLoading.set(false);
+            }
+        });
+    }
+    
+    /**
+     * Reload the rows already shown after the hikes table changed
+     * One query for as many rows as were loaded, so the cost does not grow with the table.
+     * Invalidations arriving before the scheduled reload runs are folded into it.
+     */
+    private void refreshHikePages() {
+        if (!refreshScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        pageExecutor.schedule(() -> {
+            // Changes committed from here on schedule another reload
+            refreshScheduled.set(false);
+            try {
+                int count = Math.max(loadedHikes.size(), HIKE_PAGE_SIZE);
+                List<HikeSummary> hikes = hikeDao.getFirstHikePageSync(count);
+                lastPageLoaded = hikes.size() < count;
+                loadedHikes = hikes;
+                pagedHikes.postValue(hikes);
+            } catch (Exception e) {
+                postErrorMessage("Failed to load hikes: " + e.getMessage());
+            }
+        }, REFRESH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (pagingStarted.get()) {
+            database.getInvalidationTracker().removeObserver(hikesObserver);
+        }
+        pageExecutor.shutdownNow();
+    }
+    
     /**
      * Insert a new hike
      */
@@ -72,7 +201,14 @@ public class HikeViewModel extends AndroidViewModel {
         new Thread(() -> {
             try {
                 hike.updatedAt = System.currentTimeMillis();
-                hikeDao.update(hike);
+                // Record the edited fields so the next sync sends them as a PATCH
+                database.runInTransaction(() -> {
+                    Hike stored = hikeDao.getHikeById(hike.id);
+                    if (stored != null) {
+                        ChangeTracker.applyHikeEdit(stored, hike);
+                    }
+                    hikeDao.update(hike);
+                });
                 postSuccessMessage("Hike updated successfully");
             } catch (Exception e) {
                 postErrorMessage("Failed to update hike: " + e.getMessage());
@@ -84,12 +220,32 @@ public class HikeViewModel extends AndroidViewModel {
      * Delete a hike (marks as deleted for sync, doesn't physically remove)
      */
     public void deleteHike(Hike hike) {
+        deleteHike(hike.id);
+    }
+    
+    /**
+     * Delete a hike by ID (from a list row)
+     */
+    public void deleteHike(long hikeId) {
         new Thread(() -> {
             try {
-                // Mark hike as deleted (for sync) instead of physically deleting
-                hikeDao.markAsDeleted(hike.id, System.currentTimeMillis());
-                // Delete observations first (due to foreign key constraint)
-                observationDao.deleteObservationsForHike(hike.id);
+                // Mark the hike and its observations as deleted (for sync) instead of physically deleting.
+                // Each observation gets its own tombstone so its cloud copy is deleted too, whether or
+                // not the server cascades; purging the hike later cascades them away locally.
+                long timestamp = System.currentTimeMillis();
+                List<Observation> observations = database.runInTransaction(() -> {
+                    hikeDao.markAsDeleted(hikeId, timestamp);
+                    List<Observation> children = observationDao.getObservationsForHikeSync(hikeId);
+                    for (Observation observation : children) {
+                        observationDao.markAsDeleted(observation.id, timestamp);
+                    }
+                    return children;
+                });
+                for (Observation observation : observations) {
+                    imageStore.release(observation.imageUri);
+                    // Local IDs can be reused, so never leave upload progress behind a deleted row
+                    uploadLedger.complete(UploadLedgerEntry.TYPE_OBSERVATION, observation.id);
+                }
                 postSuccessMessage("Hike deleted successfully");
             } catch (Exception e) {
                 postErrorMessage("Failed to delete hike: " + e.getMessage());
@@ -105,23 +261,25 @@ public class HikeViewModel extends AndroidViewModel {
     }
     
     /**
-     * Search hikes by name
+     * Search hikes by name, location and description (word-prefix full-text search)
      */
-    public LiveData<List<Hike>> searchHikes(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return allHikes;
+    public LiveData<List<HikeSummary>> searchHikes(String query) {
+        String match = FtsQuery.prefixMatch(query);
+        if (match == null) {
+            return getPagedHikes();
         }
-        return hikeDao.searchHikesByName(query);
+        return hikeDao.searchHikes(match);
     }
     
     /**
-     * Search hikes by location
+     * Search hikes by location (word-prefix full-text search)
      */
-    public LiveData<List<Hike>> searchHikesByLocation(String location) {
-        if (location == null || location.trim().isEmpty()) {
-            return allHikes;
+    public LiveData<List<HikeSummary>> searchHikesByLocation(String location) {
+        String match = FtsQuery.prefixMatch(location);
+        if (match == null) {
+            return getPagedHikes();
         }
-        return hikeDao.searchHikesByLocation(location);
+        return hikeDao.searchHikesByLocation(match);
     }
     
     /**
@@ -134,60 +292,34 @@ public class HikeViewModel extends AndroidViewModel {
     /**
      * Search hikes by date
      */
-    public LiveData<List<Hike>> searchHikesByDate(String date) {
+    public LiveData<List<HikeSummary>> searchHikesByDate(String date) {
         if (date == null || date.trim().isEmpty()) {
-            return allHikes;
+            return getPagedHikes();
         }
         return hikeDao.searchHikesByDate(date);
     }
     
     /**
-     * Search hikes with multiple filters (client-side filtering)
-     * This method filters results based on all provided criteria
+     * Hikes matching the current filter (all hikes while no filter is set)
+     * The filter runs as one SQL query and the list updates when hikes change
      */
-    public void searchHikesWithFilters(String name, String location, 
-                                       Float length, String date,
-                                       FilterCallback callback) {
-        new Thread(() -> {
-            try {
-                List<Hike> results = hikeDao.getAllHikesSync();
-                
-                // Apply name filter
-                if (name != null && !name.trim().isEmpty()) {
-                    results.removeIf(h -> !h.name.toLowerCase().contains(name.toLowerCase()));
-                }
-                
-                // Apply location filter
-                if (location != null && !location.trim().isEmpty()) {
-                    results.removeIf(h -> !h.location.toLowerCase().contains(location.toLowerCase()));
-                }
-                
-                // Apply length filter
-                if (length != null && length > 0) {
-                    results.removeIf(h -> h.length < length);
-                }
-                
-                // Apply date filter
-                if (date != null && !date.trim().isEmpty()) {
-                    results.removeIf(h -> !h.date.equals(date));
-                }
-                
-                // Post callback to main thread
-                final List<Hike> finalResults = results;
-                new android.os.Handler(android.os.Looper.getMainLooper()).post(() -> {
-                    callback.onFilterComplete(finalResults);
-                });
-            } catch (Exception e) {
-                postErrorMessage("Search failed: " + e.getMessage());
-            }
-        }).start();
+    public LiveData<List<HikeSummary>> getFilteredHikes() {
+        return filteredHikes;
     }
     
     /**
-     * Callback interface for filter results
+     * Replace the current filter (null or an empty filter shows all hikes)
      */
-    public interface FilterCallback {
-        void onFilterComplete(List<Hike> results);
+    public void setHikeFilter(HikeFilter filter) {
+        hikeFilter.setValue(filter);
+    }
+    
+    /**
+     * Whether a non-empty filter is narrowing the hike list
+     */
+    public boolean isHikeFilterActive() {
+        HikeFilter filter = hikeFilter.getValue();
+        return filter != null && !filter.isEmpty();
     }
     
     /**
@@ -197,6 +329,7 @@ public class HikeViewModel extends AndroidViewModel {
         new Thread(() -> {
             try {
                 observationDao.insert(observation);
+                imageStore.commit(observation.imageUri);
                 postSuccessMessage("Observation added successfully");
             } catch (Exception e) {
                 postErrorMessage("Failed to add observation: " + e.getMessage());
@@ -211,7 +344,20 @@ public class HikeViewModel extends AndroidViewModel {
         new Thread(() -> {
             try {
                 observation.updatedAt = System.currentTimeMillis();
-                observationDao.update(observation);
+                // Record the edited fields so the next sync sends them as a PATCH
+                Observation previous = database.runInTransaction(() -> {
+                    Observation stored = observationDao.getObservationById(observation.id);
+                    if (stored != null) {
+                        ChangeTracker.applyObservationEdit(stored, observation);
+                    }
+                    observationDao.update(observation);
+                    return stored;
+                });
+                if (previous != null && !Objects.equals(previous.imageUri, observation.imageUri)) {
+                    // A newly picked image was saved by the dialog; the row now holds its reference
+                    imageStore.commit(observation.imageUri);
+                    imageStore.release(previous.imageUri);
+                }
                 postSuccessMessage("Observation updated successfully");
             } catch (Exception e) {
                 postErrorMessage("Failed to update observation: " + e.getMessage());
@@ -220,12 +366,15 @@ public class HikeViewModel extends AndroidViewModel {
     }
     
     /**
-     * Delete an observation
+     * Delete an observation (marks as deleted for sync, doesn't physically remove)
      */
-    public void deleteObservation(Observation observation) {
+    public void deleteObservation(ObservationSummary observation) {
         new Thread(() -> {
             try {
-                observationDao.delete(observation);
+                // Mark observation as deleted (for sync) instead of physically deleting
+                observationDao.markAsDeleted(observation.id, System.currentTimeMillis());
+                imageStore.release(observation.imageUri);
+                uploadLedger.complete(UploadLedgerEntry.TYPE_OBSERVATION, observation.id);
                 postSuccessMessage("Observation deleted successfully");
             } catch (Exception e) {
                 postErrorMessage("Failed to delete observation: " + e.getMessage());
@@ -234,9 +383,9 @@ public class HikeViewModel extends AndroidViewModel {
     }
     
     /**
-     * Get observations for a specific hike
+     * Get the observation list rows for a specific hike
      */
-    public LiveData<List<Observation>> getObservationsForHike(long hikeId) {
+    public LiveData<List<ObservationSummary>> getObservationsForHike(long hikeId) {
         return observationDao.getObservationsForHike(hikeId);
     }
     
@@ -255,6 +404,10 @@ public class HikeViewModel extends AndroidViewModel {
             try {
                 hikeDao.deleteAllHikes();
                 observationDao.deleteAllObservations();
+                imageStore.purgeUnreferenced();
+                new SyncStateStore(getApplication()).clear();
+                uploadLedger.clear();
+                new SyncOutbox(getApplication()).clear();
                 postSuccessMessage("Database reset successfully");
             } catch (Exception e) {
                 postErrorMessage("Failed to reset database: " + e.getMessage());
@@ -321,17 +474,12 @@ public class HikeViewModel extends AndroidViewModel {
     /**
      * Sync all offline hikes to the cloud using SyncService
      * Requires auth token to be passed in
+     * Joins the upload already in progress, if any (see SyncCoordinator)
      */
     public void syncOfflineHikesToCloud(String authToken, SyncService.SyncCallback callback) {
         isLoading.postValue(true);
         
-        SyncService syncService = new SyncService(
-            getApplication(),
-            new okhttp3.OkHttpClient(),
-            authToken
-        );
-        
-        syncService.syncAllOfflineHikes(new SyncService.SyncCallback() {
+        SyncCoordinator.getInstance(getApplication()).syncOfflineToCloud(authToken, new SyncService.SyncCallback() {
             @Override
             public void onSyncStart(int totalHikes) {
                 isLoading.postValue(true);
@@ -396,17 +544,12 @@ public class HikeViewModel extends AndroidViewModel {
     
     /**
      * Sync hikes from cloud to offline (download public hikes)
+     * Joins the download already in progress, if any (see SyncCoordinator)
      */
     public void syncCloudToOffline(String authToken, SyncService.CloudSyncCallback callback) {
         isLoading.postValue(true);
         
-        SyncService syncService = new SyncService(
-            getApplication(),
-            new okhttp3.OkHttpClient(),
-            authToken
-        );
-        
-        syncService.syncCloudToOffline(new SyncService.CloudSyncCallback() {
+        SyncCoordinator.getInstance(getApplication()).syncCloudToOffline(authToken, new SyncService.CloudSyncCallback() {
             @Override
             public void onCloudSyncStart() {
                 isLoading.postValue(true);
@@ -0,0 +1,78 @@
+package com.example.mhike.services;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests for mapping batch upload responses back to the request rows.
+ */
+public class BatchIdMapperTest {
+    
+    @Test
+    public void matchesRowsByEchoedClientIdInAnyOrder() {
+        JsonArray created = rows(row("3", "c3"), row("1", "c1"), row("2", "c2"));
+        
+        assertArrayEquals(new String[] {"c1", "c2", "c3"}, BatchIdMapper.map(items("1", "2", "3"), created));
+    }
+    
+    @Test
+    public void fallsBackToPositionWhenEveryRowIsReturned() {
+        JsonArray created = rows(row(null, "c1"), row(null, "c2"), row(null, "c3"));
+        
+        assertArrayEquals(new String[] {"c1", "c2", "c3"}, BatchIdMapper.map(items("1", "2", "3"), created));
+    }
+    
+    @Test
+    public void leavesRowsUnconfirmedWhenAShortResponseHasNoClientIds() {
+        // Item 2 was rejected and left out: matching by position would give item 2 the ID of item 3
+        JsonArray created = rows(row(null, "c1"), row(null, "c3"));
+        
+        assertArrayEquals(new String[] {null, null, null}, BatchIdMapper.map(items("1", "2", "3"), created));
+    }
+    
+    @Test
+    public void shortResponseStillMatchesEchoedClientIds() {
+        JsonArray created = rows(row("1", "c1"), row(null, "c3"));
+        
+        assertArrayEquals(new String[] {"c1", null, null}, BatchIdMapper.map(items("1", "2", "3"), created));
+    }
+    
+    @Test
+    public void ignoresRowsWithoutCloudIdOrWithUnknownClientId() {
+        JsonArray created = rows(row("1", null), row("2", ""), row("9", "c9"));
+        
+        assertArrayEquals(new String[] {null, null, null}, BatchIdMapper.map(items("1", "2", "3"), created));
+    }
+    
+    private static JsonArray items(String... clientIds) {
+        JsonArray items = new JsonArray();
+        for (String clientId : clientIds) {
+            JsonObject item = new JsonObject();
+            item.addProperty("clientId", clientId);
+            item.addProperty("name", "Hike " + clientId);
+            items.add(item);
+        }
+        return items;
+    }
+    
+    private static JsonObject row(String clientId, String id) {
+        JsonObject row = new JsonObject();
+        if (clientId != null) {
+            row.addProperty("clientId", clientId);
+        }
+        row.addProperty("id", id);
+        return row;
+    }
+    
+    private static JsonArray rows(JsonObject... rows) {
+        JsonArray array = new JsonArray();
+        for (JsonObject row : rows) {
+            array.add(row);
+        }
+        return array;
+    }
+}
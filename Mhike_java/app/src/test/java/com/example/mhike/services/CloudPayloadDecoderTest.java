@@ -0,0 +1,71 @@
+package com.example.mhike.services;
+
+import com.example.mhike.database.entities.Hike;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for streaming cloud payloads into entities.
+ */
+public class CloudPayloadDecoderTest {
+    
+    private final CloudPayloadDecoder decoder = new CloudPayloadDecoder();
+    
+    @Test
+    public void decodesEachElementAndMapsCloudIds() throws IOException {
+        List<Hike> hikes = new ArrayList<>();
+        int decoded = decoder.decodeHikes(new StringReader(
+            "[{\"id\":101,\"name\":\"Scafell\"},{\"id\":null,\"name\":\"Helvellyn\"}]"), hikes::add);
+        
+        assertEquals(2, decoded);
+        assertEquals("101", hikes.get(0).cloudId);
+        assertEquals(0, hikes.get(0).id);
+        assertNull(hikes.get(1).cloudId);
+    }
+    
+    @Test
+    public void readsIsoTimestampsAsEpochMillis() throws IOException {
+        List<Hike> hikes = new ArrayList<>();
+        decoder.decodeHikes(new StringReader(
+            "[{\"id\":101,\"createdat\":\"2024-05-01T10:00:00.000Z\",\"updatedat\":\"2024-05-01T10:00:00.123Z\"}," +
+            "{\"id\":102,\"updatedat\":null}]"), hikes::add);
+        
+        assertEquals(1714557600000L, hikes.get(0).createdAt);
+        assertEquals(1714557600123L, hikes.get(0).updatedAt);
+        assertEquals(0, hikes.get(1).updatedAt);
+    }
+    
+    @Test
+    public void malformedPayloadBecomesIOException() {
+        try {
+            decoder.decodeHikes(new StringReader("[{\"id\":101},"), hike -> { });
+            fail("Expected a truncated payload to fail");
+        } catch (IOException expected) {
+            // Reported as a malformed payload
+        }
+    }
+    
+    @Test(expected = CancellationException.class)
+    public void cancellationFromSinkIsNotReportedAsMalformed() throws IOException {
+        decoder.decodeHikes(new StringReader("[{\"id\":101},{\"id\":102}]"), hike -> {
+            throw new CancellationException("Sync cancelled");
+        });
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void sinkFailureIsNotReportedAsMalformed() throws IOException {
+        decoder.decodeHikes(new StringReader("[{\"id\":101}]"), hike -> {
+            throw new IllegalStateException("Database closed");
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.mhike.services;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the outbox retry backoff and jitter schedule.
+ */
+public class SyncOutboxTest {
+    
+    private static final long BASE_MS = 30_000L;
+    private static final long MAX_MS = 60 * 60_000L;
+    
+    @Test
+    public void backoffDoublesPerFailedAttempt() {
+        assertEquals(BASE_MS, SyncOutbox.backoffMs(1));
+        assertEquals(2 * BASE_MS, SyncOutbox.backoffMs(2));
+        assertEquals(4 * BASE_MS, SyncOutbox.backoffMs(3));
+        assertEquals(64 * BASE_MS, SyncOutbox.backoffMs(7));
+    }
+    
+    @Test
+    public void backoffIsCapped() {
+        assertEquals(MAX_MS, SyncOutbox.backoffMs(8));
+        assertEquals(MAX_MS, SyncOutbox.backoffMs(30));
+        // Large attempt counts must not overflow the shift into a negative or tiny delay
+        assertEquals(MAX_MS, SyncOutbox.backoffMs(Integer.MAX_VALUE));
+    }
+    
+    @Test
+    public void backoffNeverDecreases() {
+        for (int attempts = 1; attempts < 100; attempts++) {
+            assertTrue(SyncOutbox.backoffMs(attempts + 1) >= SyncOutbox.backoffMs(attempts));
+        }
+    }
+    
+    @Test
+    public void jitterSpansUpperHalfOfBackoff() {
+        assertEquals(BASE_MS / 2, SyncOutbox.retryDelayMs(1, 0.0));
+        assertEquals(45_000L, SyncOutbox.retryDelayMs(2, 0.5));  // 60s backoff: 30s + half of 30s
+        assertTrue(SyncOutbox.retryDelayMs(1, 0.999999) < BASE_MS);
+    }
+    
+    @Test
+    public void jitteredDelayStaysInBounds() {
+        Random random = new Random(42);
+        for (int attempts = 1; attempts <= 40; attempts++) {
+            long backoff = SyncOutbox.backoffMs(attempts);
+            for (int i = 0; i < 200; i++) {
+                long delay = SyncOutbox.retryDelayMs(attempts, random.nextDouble());
+                assertTrue(delay >= backoff / 2);
+                assertTrue(delay <= backoff);
+                assertTrue(delay <= MAX_MS);
+            }
+        }
+    }
+}